@@ -39,6 +39,7 @@ import org.trustedanalytics.usermanagement.users.BlacklistEmailValidator;
 import org.trustedanalytics.usermanagement.users.UserPasswordValidator;
 import org.trustedanalytics.usermanagement.users.UserRoleRequestValidator;
 import org.trustedanalytics.usermanagement.users.rest.AuthGatewayOperations;
+import org.trustedanalytics.usermanagement.users.rest.UaaScimOperations;
 import org.trustedanalytics.usermanagement.users.service.UsersService;
 
 import javax.mail.internet.MimeMessage;
@@ -70,6 +71,11 @@ public class TestConfiguration {
         return mock(UaaOperations.class);
     }
 
+    @Bean
+    protected UaaScimOperations uaaPrivilegedScimClient() {
+        return mock(UaaScimOperations.class);
+    }
+
     @Bean
     protected InvitationsService invitationsService(SpringTemplateEngine mailTemplateEngine) {
         return new EmailInvitationsService(mailTemplateEngine);
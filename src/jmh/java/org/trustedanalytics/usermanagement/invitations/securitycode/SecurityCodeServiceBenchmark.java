@@ -0,0 +1,82 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.invitations.securitycode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trustedanalytics.usermanagement.storage.InMemoryStore;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Security code operations over the in-memory store holding the given number of pending invitations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class SecurityCodeServiceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    private int entries;
+
+    private SecurityCodeService service;
+    private SecurityCode[] codes;
+
+    @Setup
+    public void setUp() {
+        service = new SecurityCodeService(new InMemoryStore<>(SecurityCode::getEmail));
+        codes = new SecurityCode[entries];
+        for (int i = 0; i < entries; i++) {
+            codes[i] = service.generateCode("user" + i + "@example.com");
+        }
+    }
+
+    /**
+     * The generated code is redeemed again, so that the store keeps its size.
+     */
+    @Benchmark
+    public SecurityCode generateCode() {
+        return service.redeem(service.generateCode("new-user@example.com"));
+    }
+
+    @Benchmark
+    public SecurityCode verify() {
+        return service.verify(randomCode().getCode());
+    }
+
+    @Benchmark
+    public Optional<SecurityCode> findByMail() {
+        return service.findByMail(randomCode().getEmail());
+    }
+
+    private SecurityCode randomCode() {
+        return codes[ThreadLocalRandom.current().nextInt(entries)];
+    }
+}
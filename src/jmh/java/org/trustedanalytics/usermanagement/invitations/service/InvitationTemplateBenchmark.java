@@ -0,0 +1,97 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.invitations.service;
+
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring4.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering of invitation emails for a bulk invitation, by the template engine and by InvitationTemplate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvitationTemplateBenchmark {
+
+    private static final int RECIPIENTS = 1000;
+    private static final Map<String, String> CONSTANTS = ImmutableMap.of("serviceName", "Trusted Analytics");
+
+    private SpringTemplateEngine templateEngine;
+    private InvitationTemplate template;
+    private String[] emails;
+
+    @Setup
+    public void setUp() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode("HTML5");
+        resolver.setCharacterEncoding("UTF-8");
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+        template = new InvitationTemplate(templateEngine, "invite", CONSTANTS, "email", "currentUser", "accountsUrl");
+
+        emails = new String[RECIPIENTS];
+        for (int i = 0; i < RECIPIENTS; i++) {
+            emails[i] = "user" + i + "@example.com";
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECIPIENTS)
+    public void templateEngine(Blackhole blackhole) {
+        for (String email : emails) {
+            Context ctx = new Context();
+            CONSTANTS.forEach(ctx::setVariable);
+            ctx.setVariable("email", email);
+            ctx.setVariable("currentUser", "admin@example.com");
+            ctx.setVariable("accountsUrl", link(email));
+            blackhole.consume(templateEngine.process("invite", ctx));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(RECIPIENTS)
+    public void invitationTemplate(Blackhole blackhole) {
+        for (String email : emails) {
+            blackhole.consume(template.render(email, "admin@example.com", link(email)));
+        }
+    }
+
+    private static String link(String email) {
+        return "https://console.example.com/new-account?code=" + email.hashCode();
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.security;
+
+import com.google.common.collect.ImmutableMap;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.security.core.Authentication;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction of the authentication from decoded access tokens, done on every authenticated request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScopeAuthoritiesTokenConverterBenchmark {
+
+    private final ScopeAuthoritiesTokenConverter converter = new ScopeAuthoritiesTokenConverter();
+
+    private final Map<String, ?> scopeToken = ImmutableMap.of(
+            ScopeAuthoritiesTokenConverter.USERNAME, "admin@example.com",
+            ScopeAuthoritiesTokenConverter.USER_ID, "admin-id",
+            "scope", Arrays.asList("openid", "tap.admin", "tap.user", "scim.read", "scim.write",
+                    "password.write", "uaa.user", "console.admin", "cloud_controller.read", "user_provided"));
+
+    private final Map<String, ?> authoritiesToken = ImmutableMap.of(
+            ScopeAuthoritiesTokenConverter.USERNAME, "admin@example.com",
+            ScopeAuthoritiesTokenConverter.AUTHORITIES, Arrays.asList("tap.admin", "uaa.resource", "scim.read"));
+
+    @Benchmark
+    public Authentication scopeToken() {
+        return converter.extractAuthentication(scopeToken);
+    }
+
+    @Benchmark
+    public Authentication authoritiesToken() {
+        return converter.extractAuthentication(authoritiesToken);
+    }
+}
@@ -0,0 +1,77 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.summary;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trustedanalytics.usermanagement.summary.model.OrganizationSummary;
+import org.trustedanalytics.usermanagement.summary.model.PlatformSummary;
+import org.trustedanalytics.usermanagement.users.model.User;
+import org.trustedanalytics.usermanagement.users.model.UserRole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON serialization of the platform summary returned by /rest/orgs/summary.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PlatformSummaryBenchmark {
+
+    @Param({"100", "10000"})
+    private int users;
+
+    private ObjectMapper objectMapper;
+    private PlatformSummary summary;
+
+    @Setup
+    public void setUp() {
+        List<User> orgUsers = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            orgUsers.add(new User("user-" + i, "user" + i + "@example.com", i % 10 == 0 ? UserRole.ADMIN : UserRole.USER));
+        }
+        OrganizationSummary organization = new OrganizationSummary();
+        organization.setGuid("org-guid");
+        organization.setName("default");
+        organization.setUsers(orgUsers);
+
+        objectMapper = new ObjectMapper();
+        summary = new PlatformSummary(Collections.singletonList(organization));
+    }
+
+    @Benchmark
+    public String serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(summary);
+    }
+}
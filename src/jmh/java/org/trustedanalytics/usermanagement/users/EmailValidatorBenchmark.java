@@ -0,0 +1,87 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of validating one email and of validating a bulk invitation list with a mix of valid, invalid and
+ * blocked addresses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EmailValidatorBenchmark {
+
+    private static final int BULK_SIZE = 2000;
+
+    private BlacklistEmailValidator validator;
+    private String[] emails;
+
+    @Setup
+    public void setUp() {
+        List<String> forbiddenDomains = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            forbiddenDomains.add("blocked" + i + ".com");
+        }
+        validator = new BlacklistEmailValidator(forbiddenDomains);
+
+        emails = new String[BULK_SIZE];
+        for (int i = 0; i < BULK_SIZE; i++) {
+            switch (i % 10) {
+                case 0:
+                    emails[i] = "user" + i + "@mail.blocked" + (i % 100) + ".com";
+                    break;
+                case 1:
+                    emails[i] = ".user" + i + "@invalid@.";
+                    break;
+                default:
+                    emails[i] = "first.last+" + i + "@department.example.org";
+            }
+        }
+    }
+
+    @Benchmark
+    public void validateSingle() {
+        validator.validate("first.last@department.example.org");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BULK_SIZE)
+    public void findViolationBulk(Blackhole blackhole) {
+        for (String email : emails) {
+            blackhole.consume(validator.findViolation(email));
+        }
+    }
+}
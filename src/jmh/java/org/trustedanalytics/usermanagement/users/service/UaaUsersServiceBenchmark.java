@@ -0,0 +1,88 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users.service;
+
+import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trustedanalytics.uaa.UaaOperations;
+import org.trustedanalytics.usermanagement.users.model.User;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Mapping of the UAA user listing to organization users, with every tenth user being an admin.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UaaUsersServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    private int users;
+
+    private UaaUsersService service;
+
+    @Setup
+    public void setUp() {
+        List<ScimUser> scimUsers = new ArrayList<>();
+        List<ScimGroupMember> admins = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            String id = "user-" + i;
+            scimUsers.add(new ScimUser(id, "user" + i + "@example.com", null, null));
+            if (i % 10 == 0) {
+                admins.add(new ScimGroupMember(id));
+            }
+        }
+        ScimGroup adminGroup = new ScimGroup("group-id", "tap.admin", "zone");
+        adminGroup.setMembers(admins);
+
+        UaaOperations uaaClient = mock(UaaOperations.class);
+        when(uaaClient.getGroup("tap.admin")).thenReturn(Optional.of(adminGroup));
+        UserDirectory userDirectory = mock(UserDirectory.class);
+        when(userDirectory.getUsers()).thenReturn(scimUsers);
+
+        service = new UaaUsersService(uaaClient, userDirectory, new AdminGroupIndex(uaaClient, Duration.ofDays(1)),
+                null, null, null);
+    }
+
+    @Benchmark
+    public Collection<User> getOrgUsers() {
+        return service.getOrgUsers("org-guid");
+    }
+}
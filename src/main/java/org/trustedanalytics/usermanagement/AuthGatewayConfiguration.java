@@ -27,6 +27,7 @@ import feign.slf4j.Slf4jLogger;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.trustedanalytics.usermanagement.metrics.DependencyMetrics;
 import org.trustedanalytics.usermanagement.security.OAuth2PrivilegedInterceptor;
 import org.trustedanalytics.usermanagement.users.rest.AuthGatewayOperations;
 
@@ -43,14 +44,15 @@ public class AuthGatewayConfiguration {
      * that try to register for the first time don't have jwt token yet.
      */
     @Bean
-    public AuthGatewayOperations authgatewayOperations(OAuth2PrivilegedInterceptor interceptor) {
+    public AuthGatewayOperations authgatewayOperations(OAuth2PrivilegedInterceptor interceptor,
+                                                       DependencyMetrics dependencyMetrics) {
         final int connectTimeout = (int) TimeUnit.SECONDS.toMillis(30);
         final int readTimeout = (int) TimeUnit.MINUTES.toMillis(60);
         final ObjectMapper objectMapper = new ObjectMapper()
             .setPropertyNamingStrategy(new LowerCaseWithUnderscoresStrategy())
             .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
 
-        return Feign.builder()
+        AuthGatewayOperations operations = Feign.builder()
             .encoder(new JacksonEncoder(objectMapper))
             .decoder(new JacksonDecoder(objectMapper))
             .requestInterceptor(interceptor)
@@ -58,5 +60,6 @@ public class AuthGatewayConfiguration {
             .logger(new Slf4jLogger(AuthGatewayOperations.class))
             .logLevel(Logger.Level.BASIC)
             .target(AuthGatewayOperations.class, authGatewayUrl);
+        return dependencyMetrics.instrument(AuthGatewayOperations.class, operations, "authgateway");
     }
 }
@@ -30,6 +30,7 @@ import org.trustedanalytics.usermanagement.invitations.OrgExistsException;
 import org.trustedanalytics.usermanagement.invitations.UserExistsException;
 import org.trustedanalytics.usermanagement.invitations.WrongEmailAddressException;
 import org.trustedanalytics.usermanagement.invitations.securitycode.InvalidSecurityCodeException;
+import org.trustedanalytics.usermanagement.storage.StoreCapacityExceededException;
 import org.trustedanalytics.usermanagement.users.EmptyPasswordException;
 import org.trustedanalytics.usermanagement.users.TooShortPasswordException;
 import org.trustedanalytics.usermanagement.users.WrongUserRolesException;
@@ -117,6 +118,13 @@ public class RestErrorHandler {
         return e.getMessage();
     }
 
+    @ResponseBody
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    @ExceptionHandler(StoreCapacityExceededException.class)
+    public String storeCapacityExceeded(StoreCapacityExceededException e) throws IOException {
+        return e.getMessage();
+    }
+
     @ResponseBody
     @ResponseStatus(HttpStatus.FORBIDDEN)
     @ExceptionHandler(AccessDeniedException.class)
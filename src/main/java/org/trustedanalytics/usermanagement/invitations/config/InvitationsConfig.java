@@ -17,20 +17,29 @@ package org.trustedanalytics.usermanagement.invitations.config;
 
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
 import org.springframework.context.annotation.Profile;
-import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.thymeleaf.spring4.SpringTemplateEngine;
 import org.trustedanalytics.usermanagement.invitations.service.AngularInvitationLinkGenerator;
 import org.trustedanalytics.usermanagement.invitations.service.EmailInvitationsService;
+import org.trustedanalytics.usermanagement.invitations.service.EmailOutbox;
 import org.trustedanalytics.usermanagement.invitations.service.EmailService;
 import org.trustedanalytics.usermanagement.invitations.service.InvitationLinkGenerator;
 import org.trustedanalytics.usermanagement.invitations.service.InvitationsService;
+import org.trustedanalytics.usermanagement.invitations.service.MessageService;
+import org.trustedanalytics.usermanagement.invitations.service.OutboxMessage;
+import org.trustedanalytics.usermanagement.invitations.service.PooledJavaMailSender;
+import org.trustedanalytics.usermanagement.metrics.DependencyMetrics;
+import org.trustedanalytics.usermanagement.metrics.OutboxMetrics;
+import org.trustedanalytics.usermanagement.storage.KeyValueStore;
 import org.trustedanalytics.usermanagement.users.BlacklistEmailValidator;
 
 import java.io.UnsupportedEncodingException;
+import java.time.Duration;
 import java.util.List;
 import java.util.Properties;
 
@@ -47,9 +56,34 @@ public class InvitationsConfig {
     @Autowired
     private SmtpProperties smtpProperties;
 
-    @Bean(name="emailService")
-    protected EmailService emailService() throws UnsupportedEncodingException {
-        JavaMailSenderImpl sender = new JavaMailSenderImpl();
+    @Value("${smtp.outbox.workers:4}")
+    private int outboxWorkers;
+
+    @Value("${smtp.outbox.max_attempts:8}")
+    private int outboxMaxAttempts;
+
+    @Value("${smtp.outbox.initial_backoff_seconds:30}")
+    private long outboxInitialBackoffSeconds;
+
+    @Value("${smtp.outbox.max_backoff_seconds:3600}")
+    private long outboxMaxBackoffSeconds;
+
+    @Value("${smtp.outbox.poll_delay:5000}")
+    private long outboxPollDelay;
+
+    @Value("${smtp.pool.size:4}")
+    private int poolSize;
+
+    @Value("${smtp.pool.max_idle_seconds:60}")
+    private long poolMaxIdleSeconds;
+
+    @Value("${smtp.pool.max_messages_per_connection:100}")
+    private int poolMaxMessagesPerConnection;
+
+    @Bean(destroyMethod = "close")
+    protected PooledJavaMailSender mailSender() {
+        PooledJavaMailSender sender = new PooledJavaMailSender(poolSize, Duration.ofSeconds(poolMaxIdleSeconds),
+                poolMaxMessagesPerConnection);
 
         int port = smtpProperties.getPort();
 
@@ -74,7 +108,10 @@ public class InvitationsConfig {
             mailProps.setProperty("mail.smtps.ssl.enable", "true");
         }
 
-        mailProps.setProperty("mail.smtps.connectiontimeout", Integer.toString(smtpProperties.getTimeout()));
+        String timeout = Integer.toString(smtpProperties.getTimeout());
+        mailProps.setProperty(String.format("mail.%s.connectiontimeout", smtpProperties.getProtocol()), timeout);
+        mailProps.setProperty(String.format("mail.%s.timeout", smtpProperties.getProtocol()), timeout);
+        mailProps.setProperty(String.format("mail.%s.writetimeout", smtpProperties.getProtocol()), timeout);
 
         if (smtpProperties.isDebug()) {
             mailProps.setProperty("mail.debug", "true");
@@ -82,8 +119,30 @@ public class InvitationsConfig {
         }
 
         sender.setJavaMailProperties(mailProps);
+        return sender;
+    }
 
-        return new EmailService(sender, smtpProperties.getEmail(), smtpProperties.getEmailName());
+    @Bean(name="emailService")
+    protected MessageService emailService(DependencyMetrics dependencyMetrics, PooledJavaMailSender mailSender)
+            throws UnsupportedEncodingException {
+        return dependencyMetrics.instrument(MessageService.class,
+                new EmailService(mailSender, smtpProperties.getEmail(), smtpProperties.getEmailName()), "smtp");
+    }
+
+    /**
+     * Invitations are queued here and sent by background workers through emailService, so that slow SMTP
+     * servers do not block requests.
+     */
+    @Bean
+    @Primary
+    protected MessageService emailOutbox(KeyValueStore<OutboxMessage> emailOutboxStore,
+                                         KeyValueStore<OutboxMessage> emailDeadLetterStore,
+                                         @Qualifier("emailService") MessageService emailService,
+                                         OutboxMetrics outboxMetrics) {
+        return new EmailOutbox(emailOutboxStore, emailDeadLetterStore, emailService, outboxMetrics,
+                new EmailOutbox.Settings(outboxWorkers, outboxMaxAttempts,
+                        Duration.ofSeconds(outboxInitialBackoffSeconds), Duration.ofSeconds(outboxMaxBackoffSeconds),
+                        outboxPollDelay));
     }
 
     @Bean(name="invitationsService")
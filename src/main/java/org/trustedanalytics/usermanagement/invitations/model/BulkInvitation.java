@@ -0,0 +1,90 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.invitations.model;
+
+import com.fasterxml.jackson.annotation.JsonSetter;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import org.trustedanalytics.usermanagement.users.WrongUserRolesException;
+import org.trustedanalytics.usermanagement.users.model.UserRole;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter @Setter(value= AccessLevel.PRIVATE)
+public class BulkInvitation {
+
+    private String email;
+
+    private UserRole role = UserRole.USER;
+
+    private BulkInvitation() {
+    }
+
+    /**
+     * Kept as given, the controller normalizes it together with the other entry points.
+     */
+    @JsonSetter
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    @JsonSetter
+    public void setRole(UserRole role) {
+        this.role = role == null ? UserRole.USER : role;
+    }
+
+    public static BulkInvitation of(String email, UserRole role) {
+        BulkInvitation invitation = new BulkInvitation();
+        invitation.setEmail(email);
+        invitation.setRole(role);
+        return invitation;
+    }
+
+    /**
+     * Reads "email[,role]" lines, skipping blank lines and an optional header line starting with "email".
+     * The role defaults to USER.
+     */
+    public static List<BulkInvitation> fromCsv(Reader csv) throws IOException {
+        List<BulkInvitation> invitations = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(csv);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            String[] fields = line.split(",", -1);
+            String email = fields[0].trim();
+            if (email.isEmpty() || (lineNumber == 1 && "email".equalsIgnoreCase(email))) {
+                continue;
+            }
+            String role = fields.length > 1 ? fields[1].trim() : "";
+            invitations.add(of(email, role.isEmpty() ? null : parseRole(role, lineNumber)));
+        }
+        return invitations;
+    }
+
+    private static UserRole parseRole(String role, int lineNumber) {
+        try {
+            return UserRole.valueOf(role.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new WrongUserRolesException(String.format("Invalid role %s in line %d", role, lineNumber), e);
+        }
+    }
+}
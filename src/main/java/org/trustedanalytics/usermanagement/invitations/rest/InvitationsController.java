@@ -20,8 +20,11 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -34,8 +37,10 @@ import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
 import org.trustedanalytics.usermanagement.invitations.InvitationNotSentException;
 import org.trustedanalytics.usermanagement.invitations.UserExistsException;
+import org.trustedanalytics.usermanagement.invitations.model.BulkInvitation;
 import org.trustedanalytics.usermanagement.invitations.model.Invitation;
 import org.trustedanalytics.usermanagement.invitations.model.InvitationErrorDescription;
+import org.trustedanalytics.usermanagement.invitations.model.InvitationResult;
 import org.trustedanalytics.usermanagement.invitations.service.AccessInvitationsService;
 import org.trustedanalytics.usermanagement.invitations.service.InvitationsService;
 import org.trustedanalytics.usermanagement.orgs.model.Org;
@@ -44,15 +49,29 @@ import org.trustedanalytics.usermanagement.security.service.UserDetailsFinder;
 import org.trustedanalytics.usermanagement.users.BlacklistEmailValidator;
 import org.trustedanalytics.usermanagement.users.model.UserRole;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 @RestController
 @ControllerAdvice
 @RequestMapping("/rest/invitations")
 public class InvitationsController {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(InvitationsController.class);
+
     public static final String IS_ADMIN_CONDITION = "hasRole('tap.admin')";
     public static final String RESEND_INVITATION_URL = "/{email}/resend";
+    public static final String BULK_INVITATIONS_URL = "/bulk";
+    public static final String CSV_MEDIA_TYPE = "text/csv";
 
     //:.+ is required, otherwise Spring truncates value with @PathVariable up to last dot
     public static final String DELETE_INVITATION_URL = "/{email:.+}";
@@ -94,7 +113,7 @@ public class InvitationsController {
         // TODO: missing multi-organization feature. User should have eligibility to create organization.
         Org organiztionInvitedTo = organizationsStorage.getOrganizations().iterator().next();
 
-        String userToInviteEmail = invitation.getEmail();
+        String userToInviteEmail = emailValidator.normalize(invitation.getEmail());
         emailValidator.validate(userToInviteEmail);
         if (invitationsService.userExists(userToInviteEmail)) {
             throw new UserExistsException(String.format("User %s already exists", userToInviteEmail));
@@ -113,6 +132,37 @@ public class InvitationsController {
                 });
     }
 
+    @ApiOperation(
+            value = "Add invitations for many emails at once.",
+            notes = "Privilege level: Consumer of this endpoint must have a valid token containing console.admin scope")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK", response = InvitationResult.class, responseContainer = "List"),
+            @ApiResponse(code = 500, message = "Internal server error, e.g. error connecting to CloudController")
+    })
+    @RequestMapping(value = BULK_INVITATIONS_URL, method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_JSON_VALUE)
+    @PreAuthorize(IS_ADMIN_CONDITION)
+    public List<InvitationResult> addInvitations(@RequestBody List<BulkInvitation> invitations,
+                                                 @ApiParam(hidden = true) Authentication authentication) {
+        return inviteAll(invitations, authentication);
+    }
+
+    @ApiOperation(
+            value = "Add invitations for many emails at once, read from \"email[,role]\" lines.",
+            notes = "Privilege level: Consumer of this endpoint must have a valid token containing console.admin scope")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK", response = InvitationResult.class, responseContainer = "List"),
+            @ApiResponse(code = 400, message = "Invalid role."),
+            @ApiResponse(code = 500, message = "Internal server error, e.g. error connecting to CloudController")
+    })
+    @RequestMapping(value = BULK_INVITATIONS_URL, method = RequestMethod.POST, consumes = CSV_MEDIA_TYPE)
+    @PreAuthorize(IS_ADMIN_CONDITION)
+    public List<InvitationResult> addInvitationsFromCsv(@ApiParam(hidden = true) Reader csv,
+                                                        @ApiParam(hidden = true) Authentication authentication)
+            throws IOException {
+        return inviteAll(BulkInvitation.fromCsv(csv), authentication);
+    }
+
     @ApiOperation(
             value = "Get pending invitations.",
             notes = "Privilege level: Consumer of this endpoint must have a valid token containing console.admin scope ")
@@ -157,6 +207,91 @@ public class InvitationsController {
         invitationsService.deleteInvitation(email);
     }
 
+    /**
+     * Same outcome as addInvitation for every email, but existing users are checked and security codes
+     * stored in bulk. Access invitations are updated atomically one email at a time, so that concurrent
+     * invitations of the same email are not lost, and created before the email is queued. Failures are
+     * reported per email instead of failing the request; an email that cannot be sent leaves no invitation.
+     */
+    private List<InvitationResult> inviteAll(List<BulkInvitation> invitations, Authentication authentication) {
+        Org organizationInvitedTo = organizationsStorage.getOrganizations().iterator().next();
+
+        InvitationResult[] results = new InvitationResult[invitations.size()];
+        Map<String, Integer> positions = new LinkedHashMap<>();
+        for (int i = 0; i < invitations.size(); i++) {
+            String email = emailValidator.normalize(invitations.get(i).getEmail());
+            Optional<String> violation = emailValidator.findViolation(email);
+            if (violation.isPresent()) {
+                results[i] = error(email, violation.get());
+            } else if (positions.putIfAbsent(email, i) != null) {
+                results[i] = error(email, "Duplicate email");
+            }
+        }
+
+        invitationsService.findExistingUsers(positions.keySet()).forEach(email -> {
+            Integer position = positions.remove(email);
+            if (position != null) {
+                results[position] = error(email, String.format("User %s already exists", email));
+            }
+        });
+
+        if (!positions.isEmpty()) {
+            String orgGuid = organizationInvitedTo.getGuid();
+            Set<String> pending = accessInvitationsService.getAccessInvitations(positions.keySet()).keySet();
+            List<String> newEmails = new ArrayList<>();
+            positions.forEach((email, position) -> {
+                if (pending.contains(email)) {
+                    UserRole role = invitations.get(position).getRole();
+                    accessInvitationsService.createOrUpdateInvitation(email, ui -> ui.addOrgAccessInvitation(orgGuid, role));
+                    results[position] = new InvitationResult(email, InvitationErrorDescription.State.UPDATED,
+                            "Updated pending invitation");
+                } else {
+                    newEmails.add(email);
+                }
+            });
+
+            List<String> invited = new ArrayList<>();
+            Set<String> created = new HashSet<>();
+            for (String email : newEmails) {
+                UserRole role = invitations.get(positions.get(email)).getRole();
+                try {
+                    AccessInvitationsService.CreateOrUpdateState state = accessInvitationsService
+                            .createOrUpdateInvitation(email, ui -> ui.addOrgAccessInvitation(orgGuid, role));
+                    if (state == AccessInvitationsService.CreateOrUpdateState.CREATED) {
+                        created.add(email);
+                    }
+                    invited.add(email);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("Unable to store invitation for {}", email, e);
+                    results[positions.get(email)] = error(email, "Unable to store invitation");
+                }
+            }
+
+            if (!invited.isEmpty()) {
+                String currentUserName = detailsFinder.findUserName(authentication);
+                BiConsumer<String, RuntimeException> failed = (email, e) -> {
+                    if (created.contains(email)) {
+                        accessInvitationsService.redeemAccessInvitations(email);
+                    }
+                    results[positions.get(email)] = error(email, "Unable to send invitation");
+                };
+                try {
+                    invitationsService.sendInviteEmails(invited, currentUserName, failed).forEach((email, link) ->
+                            results[positions.get(email)] = new InvitationResult(email,
+                                    InvitationErrorDescription.State.NEW, link));
+                } catch (RuntimeException e) {
+                    // security codes could not be stored, so no email was sent
+                    LOGGER.warn("Unable to send invitations", e);
+                    invited.forEach(email -> failed.accept(email, e));
+                }
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    private static InvitationResult error(String email, String details) {
+        return new InvitationResult(email, InvitationErrorDescription.State.ERROR, details);
+    }
 
     @ExceptionHandler(InvitationNotSentException.class)
     @ResponseStatus(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -87,17 +87,22 @@ public class RegistrationsController {
         if (Strings.isNullOrEmpty(code)) {
             throw new InvalidSecurityCodeException("Security code empty or null");
         }
-        SecurityCode sc = securityCodeService.verify(code);
-        userPasswordValidator.validate(newUser.getPassword());
+        // consume the code up front, so that concurrent submits cannot redeem it twice
+        SecurityCode sc = securityCodeService.redeem(code);
         String email = sc.getEmail();
-        invitationsService
-            .createUser(email, newUser.getPassword(), organizationInvitedTo.getGuid())
-            .ifPresent(uuid -> {
-                newUser.setUserGuid(uuid);
-                privilegedUsersService.updateUserRolesInOrgs(email, uuid);
-            });
+        try {
+            userPasswordValidator.validate(newUser.getPassword());
+            invitationsService
+                .createUser(email, newUser.getPassword(), organizationInvitedTo.getGuid())
+                .ifPresent(uuid -> {
+                    newUser.setUserGuid(uuid);
+                    privilegedUsersService.updateUserRolesInOrgs(email, uuid);
+                });
+        } catch (RuntimeException e) {
+            securityCodeService.restore(sc);
+            throw e;
+        }
 
-        securityCodeService.redeem(sc);
         accessInvitationsService.redeemAccessInvitations(email);
 
         return newUser;
@@ -25,6 +25,8 @@ public class SecurityCode {
 
     private String code;
 
+    private long expiresAt;
+
     public SecurityCode() {
     }
 
@@ -33,9 +35,14 @@ public class SecurityCode {
     }
 
     public SecurityCode(long id, String email, String code) {
+        this(id, email, code, 0);
+    }
+
+    public SecurityCode(long id, String email, String code, long expiresAt) {
         this.id = id;
         this.email = email;
         this.code = code;
+        this.expiresAt = expiresAt;
     }
 
     public String getEmail() {
@@ -50,6 +57,13 @@ public class SecurityCode {
         return id;
     }
 
+    /**
+     * Epoch millis after which the code is no longer valid, or 0 when it does not expire.
+     */
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
     @Override
     public int hashCode() {
         return Objects.hash(email, code);
@@ -17,16 +17,36 @@ package org.trustedanalytics.usermanagement.invitations.securitycode;
 
 import org.trustedanalytics.usermanagement.storage.KeyValueStore;
 
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 public class SecurityCodeService {
+    private static final int SCAN_BATCH_SIZE = 100;
+
     private final KeyValueStore<SecurityCode> store;
+    private final Duration ttl;
+    private final Clock clock;
 
     public SecurityCodeService( KeyValueStore<SecurityCode> store) {
+        this(store, null);
+    }
+
+    public SecurityCodeService(KeyValueStore<SecurityCode> store, Duration ttl) {
+        this(store, ttl, Clock.systemUTC());
+    }
+
+    SecurityCodeService(KeyValueStore<SecurityCode> store, Duration ttl, Clock clock) {
         this.store = store;
+        this.ttl = ttl;
+        this.clock = clock;
     }
 
     public SecurityCode generateCode(String email) {
@@ -34,38 +54,89 @@ public class SecurityCodeService {
         SecurityCode code;
 
         for(int i = 0; i < attempts; i++) {
-            code = new SecurityCode(email, UUID.randomUUID().toString());
-            if(store.putIfAbsent(code.getCode(), code)) {
+            code = newCode(email);
+            if(store.putIfAbsent(code.getCode(), code, ttl)) {
                 return code;
             }
         }
         throw new SecurityCodeGenerationException("Security code generating conflict");
     }
 
+    /**
+     * Generates codes for all the emails and stores them with a single putAll. Unlike generateCode it does
+     * not retry on conflicts, which random UUIDs make practically impossible. Returns codes keyed by email.
+     */
+    public Map<String, SecurityCode> generateCodes(Collection<String> emails) {
+        Map<String, SecurityCode> byEmail = new LinkedHashMap<>();
+        Map<String, SecurityCode> byCode = new HashMap<>();
+        for (String email : emails) {
+            SecurityCode code = newCode(email);
+            byEmail.put(email, code);
+            byCode.put(code.getCode(), code);
+        }
+        store.putAll(byCode, ttl);
+        return byEmail;
+    }
+
     public SecurityCode redeem(SecurityCode code) {
         store.remove(code.getCode());
         return code;
     }
 
-    public SecurityCode verify(String code) {
-        if (!store.hasKey(code)) {
-            throw new InvalidSecurityCodeException("Invalid security code " + code);
+    /**
+     * Consumes the code, so that it can be redeemed only once. Use restore when the operation the code
+     * was redeemed for fails.
+     */
+    public SecurityCode redeem(String code) {
+        return validCode(code, store.getAndRemove(code));
+    }
+
+    /**
+     * Puts a redeemed code back with the time it had left, unless it expired in the meantime.
+     */
+    public void restore(SecurityCode code) {
+        if (code.getExpiresAt() == 0) {
+            // does not expire, or was stored before deadlines were recorded
+            store.putIfAbsent(code.getCode(), code, ttl);
+            return;
+        }
+        long remaining = code.getExpiresAt() - clock.millis();
+        if (remaining > 0) {
+            store.putIfAbsent(code.getCode(), code, Duration.ofMillis(remaining));
         }
+    }
 
-        return store.get(code);
+    public SecurityCode verify(String code) {
+        return validCode(code, store.get(code));
     }
 
     public Optional<SecurityCode> findByMail(String email) {
-        return store.values()
-                .stream()
-                .filter(entry -> entry.getEmail().equals(email))
-                .findFirst();
+        return store.findByIndex(email);
+    }
+
+    public boolean isStorageAvailable() {
+        return store.ping();
     }
 
     public Set<String> getKeys() {
-        return store.values()
-                .stream()
-                .map(entry -> entry.getEmail())
-                .collect(Collectors.toSet());
+        Set<String> emails = new HashSet<>();
+        store.scan(SCAN_BATCH_SIZE, code -> emails.add(code.getEmail()));
+        return emails;
+    }
+
+    private SecurityCode newCode(String email) {
+        long expiresAt = expires() ? clock.millis() + ttl.toMillis() : 0;
+        return new SecurityCode(0, email, UUID.randomUUID().toString(), expiresAt);
+    }
+
+    private boolean expires() {
+        return ttl != null && !ttl.isZero() && !ttl.isNegative();
+    }
+
+    private static SecurityCode validCode(String code, SecurityCode securityCode) {
+        if (securityCode == null) {
+            throw new InvalidSecurityCodeException("Invalid security code " + code);
+        }
+        return securityCode;
     }
 }
@@ -18,7 +18,11 @@ package org.trustedanalytics.usermanagement.invitations.service;
 import com.google.common.base.Strings;
 import org.trustedanalytics.usermanagement.storage.KeyValueStore;
 
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 public class AccessInvitationsService {
@@ -29,9 +33,15 @@ public class AccessInvitationsService {
     }
 
     private final KeyValueStore<AccessInvitations> store;
+    private final Duration ttl;
 
     public AccessInvitationsService(KeyValueStore<AccessInvitations> store){
+        this(store, null);
+    }
+
+    public AccessInvitationsService(KeyValueStore<AccessInvitations> store, Duration ttl) {
         this.store = store;
+        this.ttl = ttl;
     }
 
     public Optional<AccessInvitations> getAccessInvitations(String email) {
@@ -41,7 +51,15 @@ public class AccessInvitationsService {
 
     public void updateAccessInvitation(String email, AccessInvitations invitations) {
         validateStringArgument(email);
-        store.put(email, invitations);
+        store.put(email, invitations, ttl);
+    }
+
+    /**
+     * Returns the pending invitations of those emails which have any, keyed by email.
+     */
+    public Map<String, AccessInvitations> getAccessInvitations(Collection<String> emails) {
+        emails.forEach(this::validateStringArgument);
+        return store.getAll(emails);
     }
 
     public void redeemAccessInvitations(String email) {
@@ -51,20 +69,19 @@ public class AccessInvitationsService {
 
     public CreateOrUpdateState createOrUpdateInvitation(String email, Consumer<AccessInvitations> consumer) {
         validateStringArgument(email);
-        AccessInvitations userInvitations;
-        CreateOrUpdateState state;
-
-        if (store.hasKey(email)) {
-            userInvitations = store.get(email);
-            state = CreateOrUpdateState.UPDATED;
-        } else {
-            userInvitations = new AccessInvitations();
-            state = CreateOrUpdateState.CREATED;
-        }
+        AtomicReference<CreateOrUpdateState> state = new AtomicReference<>();
 
-        consumer.accept(userInvitations);
-        store.put(email, userInvitations);
-        return state;
+        store.compute(email, userInvitations -> {
+            if (userInvitations == null) {
+                userInvitations = new AccessInvitations();
+                state.set(CreateOrUpdateState.CREATED);
+            } else {
+                state.set(CreateOrUpdateState.UPDATED);
+            }
+            consumer.accept(userInvitations);
+            return userInvitations;
+        }, ttl);
+        return state.get();
     }
 
     private void validateStringArgument(String arg) {
@@ -15,11 +15,15 @@
  */
 package org.trustedanalytics.usermanagement.invitations.service;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.cloudfoundry.identity.uaa.scim.ScimUser;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.thymeleaf.context.Context;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.thymeleaf.spring4.SpringTemplateEngine;
 import org.trustedanalytics.uaa.UaaOperations;
 import org.trustedanalytics.usermanagement.invitations.NoPendingInvitationFoundException;
@@ -27,15 +31,22 @@ import org.trustedanalytics.usermanagement.invitations.UserExistsException;
 import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCode;
 import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCodeService;
 import org.trustedanalytics.usermanagement.users.rest.AuthGatewayOperations;
+import org.trustedanalytics.usermanagement.users.rest.UaaScimOperations;
+import org.trustedanalytics.usermanagement.users.service.UserChangedEvent;
 
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
-public class EmailInvitationsService implements InvitationsService {
+public class EmailInvitationsService implements InvitationsService, ApplicationEventPublisherAware {
 
     private static final Log LOGGER = LogFactory.getLog(EmailInvitationsService.class);
+    private static final String SUBJECT = "Invitation to join Trusted Analytics platform";
 
-    private final SpringTemplateEngine templateEngine;
+    private final Supplier<InvitationTemplate> inviteTemplate;
 
     @Autowired
     private MessageService messageService;
@@ -49,14 +60,25 @@ public class EmailInvitationsService implements InvitationsService {
     @Autowired
     private UaaOperations uaaPrivilegedClient;
 
+    @Autowired
+    private UaaScimOperations uaaPrivilegedScimClient;
+
     @Autowired
     private InvitationLinkGenerator invitationLinkGenerator;
 
     @Autowired
     private AuthGatewayOperations authGatewayOperations;
 
+    private ApplicationEventPublisher eventPublisher;
+
     public EmailInvitationsService(SpringTemplateEngine templateEngine) {
-        this.templateEngine = templateEngine;
+        this.inviteTemplate = Suppliers.memoize(() -> new InvitationTemplate(templateEngine, "invite",
+                ImmutableMap.of("serviceName", "Trusted Analytics"), "email", "currentUser", "accountsUrl"));
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
@@ -75,23 +97,37 @@ public class EmailInvitationsService implements InvitationsService {
         return sendEmail(email, currentUser, sc.get().getCode());
     }
 
+    @Override
+    public Map<String, String> sendInviteEmails(Collection<String> emails, String currentUser,
+                                                BiConsumer<String, RuntimeException> onFailure) {
+        Map<String, String> links = new LinkedHashMap<>();
+        securityCodeService.generateCodes(emails).forEach((email, sc) -> {
+            try {
+                links.put(email, deliverEmail(email, currentUser, sc.getCode()));
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to send invitation to user " + email, e);
+                securityCodeService.redeem(sc);
+                onFailure.accept(email, e);
+            }
+        });
+        return links;
+    }
+
     private String sendEmail(String email, String currentUser, String code) {
         validateUsername(email);
-        String subject = "Invitation to join Trusted Analytics platform";
+        return deliverEmail(email, currentUser, code);
+    }
+
+    private String deliverEmail(String email, String currentUser, String code) {
         String invitationLink = invitationLinkGenerator.getLink(code);
         String htmlContent = getEmailHtml(email, currentUser, invitationLink);
-        messageService.sendMimeMessage(email, subject, htmlContent);
+        messageService.sendMimeMessage(email, SUBJECT, htmlContent);
         LOGGER.info("Sent invitation to user " + email);
         return invitationLink;
     }
 
     private String getEmailHtml(String email, String currentUser, String invitationLink) {
-        final Context ctx = new Context();
-        ctx.setVariable("serviceName", "Trusted Analytics");
-        ctx.setVariable("email", email);
-        ctx.setVariable("currentUser", currentUser);
-        ctx.setVariable("accountsUrl", invitationLink);
-        return templateEngine.process("invite", ctx);
+        return inviteTemplate.get().render(email, currentUser, invitationLink);
     }
 
     @Override
@@ -105,6 +141,11 @@ public class EmailInvitationsService implements InvitationsService {
         return uaaPrivilegedClient.findUserIdByName(username).isPresent();
     }
 
+    @Override
+    public Set<String> findExistingUsers(Collection<String> usernames) {
+        return uaaPrivilegedScimClient.findUserNames(usernames);
+    }
+
     @Override
     public Set<String> getPendingInvitationsEmails() {
         return securityCodeService.getKeys();
@@ -128,10 +169,17 @@ public class EmailInvitationsService implements InvitationsService {
                     authGatewayOperations.createUser(orgId, user.getId(), ex ->
                         // rollback adding user to UAA
                         uaaPrivilegedClient.deleteUser(user.getId()));
+                    publish(UserChangedEvent.created(this, user.getId()));
                     return user.getId();
                 });
     }
 
+    private void publish(UserChangedEvent event) {
+        if (eventPublisher != null) {
+            eventPublisher.publishEvent(event);
+        }
+    }
+
     private void validateUsername(String username) {
         uaaPrivilegedClient.findUserIdByName(username).ifPresent(user -> {
             throw new UserExistsException(String.format("Username %s is already taken", username));
@@ -0,0 +1,227 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.invitations.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.trustedanalytics.usermanagement.metrics.OutboxMetrics;
+import org.trustedanalytics.usermanagement.storage.KeyValueStore;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * MessageService which stores emails in a KeyValueStore and returns immediately. A bounded pool of
+ * workers delivers them through the given delivery service. Failed deliveries are retried with exponential
+ * backoff; after maxAttempts the message is moved to the dead letter store and left there for inspection.
+ *
+ * Every replica polls the shared store, so messages queued by a replica that went down are still sent.
+ * A worker leases a message before sending it, so no two workers send it at the same time.
+ */
+public class EmailOutbox implements MessageService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(EmailOutbox.class);
+    private static final int SCAN_BATCH_SIZE = 100;
+    private static final Duration LEASE = Duration.ofMinutes(5);
+
+    private final KeyValueStore<OutboxMessage> queue;
+    private final KeyValueStore<OutboxMessage> deadLetters;
+    private final MessageService delivery;
+    private final OutboxMetrics metrics;
+    private final Settings settings;
+    private final Clock clock;
+    private final String owner = UUID.randomUUID().toString();
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+
+    private ThreadPoolTaskScheduler scheduler;
+    private ThreadPoolExecutor workers;
+
+    public EmailOutbox(KeyValueStore<OutboxMessage> queue, KeyValueStore<OutboxMessage> deadLetters,
+                       MessageService delivery, OutboxMetrics metrics, Settings settings) {
+        this(queue, deadLetters, delivery, metrics, settings, Clock.systemUTC());
+    }
+
+    EmailOutbox(KeyValueStore<OutboxMessage> queue, KeyValueStore<OutboxMessage> deadLetters,
+                MessageService delivery, OutboxMetrics metrics, Settings settings, Clock clock) {
+        this.queue = queue;
+        this.deadLetters = deadLetters;
+        this.delivery = delivery;
+        this.metrics = metrics;
+        this.settings = settings;
+        this.clock = clock;
+    }
+
+    @PostConstruct
+    public void init() {
+        workers = new ThreadPoolExecutor(settings.workers, settings.workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(settings.workers * 4));
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setAwaitTerminationSeconds(1);
+        scheduler.afterPropertiesSet();
+        scheduler.scheduleWithFixedDelay(this::poll, settings.pollDelay);
+    }
+
+    @PreDestroy
+    public void finish() {
+        scheduler.shutdown();
+        workers.shutdown();
+    }
+
+    @Override
+    public void sendMimeMessage(String email, String subject, String htmlContent) {
+        OutboxMessage message = new OutboxMessage(UUID.randomUUID().toString(), email, subject, htmlContent,
+                clock.millis());
+        queue.put(message.getId(), message);
+        LOGGER.debug("Queued email {} to {}", message.getId(), email);
+        submit(message.getId());
+    }
+
+    /**
+     * Submits all due messages to the workers, as long as they have free capacity.
+     */
+    public void poll() {
+        try {
+            metrics.queued(queue.size());
+            metrics.deadLetters(deadLetters.size());
+            long now = clock.millis();
+            queue.scan(SCAN_BATCH_SIZE, message -> {
+                if (message.isDue(now)) {
+                    submit(message.getId());
+                }
+            });
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to poll the email outbox", e);
+        }
+    }
+
+    /**
+     * Delivers the message if it is still queued, due and not leased by another worker.
+     */
+    void deliver(String id) {
+        try {
+            OutboxMessage message = claim(id);
+            if (message == null) {
+                return;
+            }
+            try {
+                delivery.sendMimeMessage(message.getEmail(), message.getSubject(), message.getHtmlContent());
+            } catch (RuntimeException e) {
+                failed(message, e);
+                return;
+            }
+            queue.remove(id);
+            metrics.delivered(Duration.ofMillis(clock.millis() - message.getCreatedAt()));
+            LOGGER.info("Delivered email {} to {}", id, message.getEmail());
+        } finally {
+            inFlight.remove(id);
+        }
+    }
+
+    private void submit(String id) {
+        if (workers == null || !inFlight.add(id)) {
+            return;
+        }
+        try {
+            workers.execute(() -> deliver(id));
+        } catch (RejectedExecutionException e) {
+            // all workers are busy, the next poll picks the message up
+            inFlight.remove(id);
+        }
+    }
+
+    private OutboxMessage claim(String id) {
+        long now = clock.millis();
+        OutboxMessage queued = queue.get(id);
+        if (queued == null || !queued.isDue(now)) {
+            // leased by another worker, delivered or backing off; nothing to write
+            return null;
+        }
+        String lease = owner + ":" + UUID.randomUUID();
+        OutboxMessage message = queue.compute(id, current ->
+                current != null && current.isDue(now) ? current.leased(lease, now + LEASE.toMillis()) : current,
+                null);
+        return message != null && lease.equals(message.getLeaseOwner()) ? message : null;
+    }
+
+    /**
+     * Records the failure only while the message is still leased by this attempt; once the lease expired
+     * and another worker claimed the message, or delivered it, that worker owns its state.
+     */
+    private void failed(OutboxMessage message, RuntimeException error) {
+        long now = clock.millis();
+        OutboxMessage failed = message.failed(String.valueOf(error.getMessage()), now + backoff(message.getAttempts()));
+        boolean deadLetter = failed.getAttempts() >= settings.maxAttempts;
+        String lease = message.getLeaseOwner();
+        AtomicBoolean owned = new AtomicBoolean();
+        queue.compute(failed.getId(), current -> {
+            owned.set(current != null && lease.equals(current.getLeaseOwner()));
+            if (!owned.get()) {
+                return current;
+            }
+            return deadLetter ? null : failed;
+        }, null);
+        if (!owned.get()) {
+            LOGGER.warn("Delivery of email {} to {} failed after its lease was taken over", failed.getId(),
+                    failed.getEmail(), error);
+        } else if (deadLetter) {
+            deadLetters.put(failed.getId(), failed);
+            metrics.deadLettered();
+            LOGGER.error("Giving up on email {} to {} after {} attempts", failed.getId(), failed.getEmail(),
+                    failed.getAttempts(), error);
+        } else {
+            metrics.retried();
+            LOGGER.warn("Delivery of email {} to {} failed, retrying at attempt {}", failed.getId(),
+                    failed.getEmail(), failed.getAttempts() + 1, error);
+        }
+    }
+
+    private long backoff(int previousAttempts) {
+        long max = settings.maxBackoff.toMillis();
+        long backoff = settings.initialBackoff.toMillis();
+        for (int i = 0; i < previousAttempts && backoff < max; i++) {
+            backoff *= 2;
+        }
+        return Math.min(backoff, max);
+    }
+
+    public static class Settings {
+        private final int workers;
+        private final int maxAttempts;
+        private final Duration initialBackoff;
+        private final Duration maxBackoff;
+        private final long pollDelay;
+
+        public Settings(int workers, int maxAttempts, Duration initialBackoff, Duration maxBackoff,
+                        long pollDelay) {
+            this.workers = workers;
+            this.maxAttempts = maxAttempts;
+            this.initialBackoff = initialBackoff;
+            this.maxBackoff = maxBackoff;
+            this.pollDelay = pollDelay;
+        }
+    }
+}
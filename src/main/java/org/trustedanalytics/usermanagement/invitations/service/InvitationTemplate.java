@@ -0,0 +1,92 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.invitations.service;
+
+import org.springframework.web.util.HtmlUtils;
+import org.thymeleaf.TemplateEngine;
+import org.thymeleaf.context.Context;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Email template rendered by Thymeleaf only once, with placeholders in place of the per-recipient
+ * variables. The output is split at the placeholders, so render() only concatenates the static fragments
+ * with the escaped values. Suitable for templates which only print the variables, as text or in links;
+ * variables used in conditions or iterations need the full engine.
+ */
+public class InvitationTemplate {
+
+    private final List<String> variables;
+    private final String[] fragments;
+    private final int[] slots;
+    private final int staticLength;
+
+    public InvitationTemplate(TemplateEngine templateEngine, String templateName, Map<String, ?> constants,
+                              String... variables) {
+        this.variables = Arrays.asList(variables);
+
+        // absolute url, so that th:href keeps it as it is
+        String marker = "placeholder://" + UUID.randomUUID() + "/";
+        Context ctx = new Context();
+        constants.forEach(ctx::setVariable);
+        for (int i = 0; i < variables.length; i++) {
+            ctx.setVariable(variables[i], marker + i + "/");
+        }
+        String html = templateEngine.process(templateName, ctx);
+
+        List<String> parts = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        Matcher matcher = Pattern.compile(Pattern.quote(marker) + "(\\d+)/").matcher(html);
+        int last = 0;
+        while (matcher.find()) {
+            parts.add(html.substring(last, matcher.start()));
+            positions.add(Integer.parseInt(matcher.group(1)));
+            last = matcher.end();
+        }
+        parts.add(html.substring(last));
+
+        this.fragments = parts.toArray(new String[parts.size()]);
+        this.slots = positions.stream().mapToInt(Integer::intValue).toArray();
+        this.staticLength = parts.stream().mapToInt(String::length).sum();
+    }
+
+    /**
+     * Renders the template with values of the variables, in the order they were given to the constructor.
+     */
+    public String render(String... values) {
+        if (values.length != variables.size()) {
+            throw new IllegalArgumentException("Expected values of " + variables);
+        }
+        String[] escaped = new String[values.length];
+        int length = staticLength;
+        for (int i = 0; i < values.length; i++) {
+            escaped[i] = values[i] == null ? "" : HtmlUtils.htmlEscape(values[i]);
+            length += escaped[i].length();
+        }
+
+        StringBuilder html = new StringBuilder(length);
+        for (int i = 0; i < slots.length; i++) {
+            html.append(fragments[i]).append(escaped[slots[i]]);
+        }
+        return html.append(fragments[slots.length]).toString();
+    }
+}
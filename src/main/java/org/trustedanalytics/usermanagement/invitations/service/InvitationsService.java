@@ -15,14 +15,30 @@
  */
 package org.trustedanalytics.usermanagement.invitations.service;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
 
 public interface InvitationsService {
     String sendInviteEmail(String email, String currentUser);
+
+    /**
+     * Sends invitations to emails that are known not to belong to existing users, see findExistingUsers.
+     * Returns invitation links keyed by email. An email that cannot be sent is passed to onFailure and its
+     * security code is removed; the remaining emails are still sent.
+     */
+    Map<String, String> sendInviteEmails(Collection<String> emails, String currentUser,
+                                         BiConsumer<String, RuntimeException> onFailure);
     String resendInviteEmail(String email, String currentUser);
     Optional<String> createUser(String username, String password, String orgId);
     boolean userExists(String username);
+
+    /**
+     * Returns those of the usernames that are already taken, lower-cased.
+     */
+    Set<String> findExistingUsers(Collection<String> usernames);
     Set<String> getPendingInvitationsEmails();
     void deleteInvitation(String email);
 }
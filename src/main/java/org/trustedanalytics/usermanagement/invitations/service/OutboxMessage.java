@@ -0,0 +1,81 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.invitations.service;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Email waiting in the outbox. Times are epoch milliseconds. A message is leased by a worker while it
+ * is being delivered, so that other replicas sharing the store do not send it at the same time.
+ */
+@Data
+@NoArgsConstructor
+@ToString(exclude = "htmlContent")
+public class OutboxMessage {
+
+    private String id;
+    private String email;
+    private String subject;
+    private String htmlContent;
+    private long createdAt;
+    private int attempts;
+    private long nextAttemptAt;
+    private long leaseUntil;
+    private String leaseOwner;
+    private String lastError;
+
+    public OutboxMessage(String id, String email, String subject, String htmlContent, long createdAt) {
+        this.id = id;
+        this.email = email;
+        this.subject = subject;
+        this.htmlContent = htmlContent;
+        this.createdAt = createdAt;
+        this.nextAttemptAt = createdAt;
+    }
+
+    public boolean isDue(long now) {
+        return nextAttemptAt <= now && leaseUntil <= now;
+    }
+
+    public OutboxMessage leased(String owner, long until) {
+        OutboxMessage copy = copy();
+        copy.leaseOwner = owner;
+        copy.leaseUntil = until;
+        return copy;
+    }
+
+    public OutboxMessage failed(String error, long retryAt) {
+        OutboxMessage copy = copy();
+        copy.attempts = attempts + 1;
+        copy.lastError = error;
+        copy.nextAttemptAt = retryAt;
+        copy.leaseOwner = null;
+        copy.leaseUntil = 0;
+        return copy;
+    }
+
+    private OutboxMessage copy() {
+        OutboxMessage copy = new OutboxMessage(id, email, subject, htmlContent, createdAt);
+        copy.attempts = attempts;
+        copy.nextAttemptAt = nextAttemptAt;
+        copy.leaseUntil = leaseUntil;
+        copy.leaseOwner = leaseOwner;
+        copy.lastError = lastError;
+        return copy;
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.invitations.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.mail.MailAuthenticationException;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+
+import javax.mail.Address;
+import javax.mail.AuthenticationFailedException;
+import javax.mail.MessagingException;
+import javax.mail.Transport;
+import javax.mail.internet.MimeMessage;
+import java.io.Closeable;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * JavaMailSenderImpl which keeps up to poolSize connected and authenticated transports open and reuses
+ * them, instead of connecting (and for smtps, handshaking TLS) for every send() call. All messages
+ * of one send() call go through one connection. A transport is replaced after any failed send, when the
+ * server dropped it, when it was idle longer than maxIdle, or when it has sent maxMessagesPerConnection
+ * messages.
+ */
+public class PooledJavaMailSender extends JavaMailSenderImpl implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PooledJavaMailSender.class);
+
+    private final long maxIdleMillis;
+    private final int maxMessagesPerConnection;
+    private final Clock clock;
+    private final BlockingQueue<PooledTransport> idle;
+    private final Semaphore permits;
+    private volatile boolean closed;
+
+    public PooledJavaMailSender(int poolSize, Duration maxIdle, int maxMessagesPerConnection) {
+        this(poolSize, maxIdle, maxMessagesPerConnection, Clock.systemUTC());
+    }
+
+    PooledJavaMailSender(int poolSize, Duration maxIdle, int maxMessagesPerConnection, Clock clock) {
+        this.maxIdleMillis = maxIdle.toMillis();
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.clock = clock;
+        this.idle = new ArrayBlockingQueue<>(poolSize);
+        this.permits = new Semaphore(poolSize);
+    }
+
+    @Override
+    protected void doSend(MimeMessage[] mimeMessages, Object[] originalMessages) {
+        Map<Object, Exception> failedMessages = new LinkedHashMap<>();
+        acquirePermit();
+        PooledTransport transport = null;
+        try {
+            for (int i = 0; i < mimeMessages.length; i++) {
+                Object original = originalMessages != null ? originalMessages[i] : mimeMessages[i];
+                try {
+                    if (transport == null) {
+                        transport = borrow();
+                    }
+                    send(transport, mimeMessages[i]);
+                } catch (AuthenticationFailedException ex) {
+                    throw new MailAuthenticationException(ex);
+                } catch (MessagingException ex) {
+                    failedMessages.put(original, ex);
+                    // the state of the SMTP session after a failed send is unknown, never reuse it
+                    if (transport != null) {
+                        discard(transport);
+                        transport = null;
+                    }
+                }
+            }
+        } catch (RuntimeException ex) {
+            if (transport != null) {
+                discard(transport);
+                transport = null;
+            }
+            throw ex;
+        } finally {
+            if (transport != null) {
+                release(transport);
+            }
+            permits.release();
+        }
+        if (!failedMessages.isEmpty()) {
+            throw new MailSendException(failedMessages);
+        }
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        PooledTransport transport;
+        while ((transport = idle.poll()) != null) {
+            discard(transport);
+        }
+    }
+
+    private void send(PooledTransport transport, MimeMessage mimeMessage) throws MessagingException {
+        if (mimeMessage.getSentDate() == null) {
+            mimeMessage.setSentDate(new Date());
+        }
+        String messageId = mimeMessage.getMessageID();
+        mimeMessage.saveChanges();
+        if (messageId != null) {
+            // preserve explicitly specified message id, saveChanges() would replace it
+            mimeMessage.setHeader("Message-ID", messageId);
+        }
+        Address[] addresses = mimeMessage.getAllRecipients();
+        transport.transport.sendMessage(mimeMessage, addresses != null ? addresses : new Address[0]);
+        transport.sent++;
+    }
+
+    private PooledTransport borrow() throws MessagingException {
+        PooledTransport transport;
+        while ((transport = idle.poll()) != null) {
+            if (isReusable(transport)) {
+                return transport;
+            }
+            discard(transport);
+        }
+        return new PooledTransport(connectTransport());
+    }
+
+    private boolean isReusable(PooledTransport transport) {
+        // isConnected() checks the connection with a NOOP command
+        return clock.millis() - transport.lastUsed < maxIdleMillis && transport.transport.isConnected();
+    }
+
+    private void release(PooledTransport transport) {
+        transport.lastUsed = clock.millis();
+        if (closed || transport.sent >= maxMessagesPerConnection || !idle.offer(transport)) {
+            discard(transport);
+        }
+    }
+
+    private void discard(PooledTransport transport) {
+        try {
+            transport.transport.close();
+        } catch (MessagingException ex) {
+            LOGGER.debug("Unable to close SMTP transport", ex);
+        }
+    }
+
+    private void acquirePermit() {
+        try {
+            permits.acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MailSendException("Interrupted while waiting for an SMTP connection", ex);
+        }
+    }
+
+    private class PooledTransport {
+        private final Transport transport;
+        private long lastUsed = clock.millis();
+        private int sent;
+
+        PooledTransport(Transport transport) {
+            this.transport = transport;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.metrics;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Latency histogram, outcome counter and in-flight gauge of calls to external dependencies (UAA,
+ * auth-gateway, Redis, SMTP), labelled by dependency and by the name of the called method.
+ */
+public class DependencyMetrics {
+
+    private final Histogram latency;
+    private final Counter calls;
+    private final Gauge inFlight;
+
+    public DependencyMetrics(String namePrefix) {
+        latency = Histogram.build()
+                .name(namePrefix + "_dependency_duration_seconds")
+                .labelNames("dependency", "operation")
+                .help("Duration of calls to external dependencies in seconds.")
+                .register();
+        calls = Counter.build()
+                .name(namePrefix + "_dependency_calls_total")
+                .labelNames("dependency", "operation", "outcome")
+                .help("Number of finished calls to external dependencies by outcome.")
+                .register();
+        inFlight = Gauge.build()
+                .name(namePrefix + "_dependency_calls_in_flight")
+                .labelNames("dependency")
+                .help("Number of calls to external dependencies in progress.")
+                .register();
+    }
+
+    /**
+     * Wraps the target in a proxy implementing the given interface that measures every method call.
+     * Methods inherited from Object are passed through unmeasured.
+     */
+    public <T> T instrument(Class<T> type, T target, String dependency) {
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                return invoke(target, method, args);
+            }
+            return record(dependency, method.getName(), () -> invoke(target, method, args));
+        };
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+
+    /**
+     * Measures a single call, for dependencies which are not reached through an interface.
+     */
+    public <R> R time(String dependency, String operation, Supplier<R> call) {
+        try {
+            return record(dependency, operation, call::get);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            // a Supplier cannot throw checked exceptions
+            throw new IllegalStateException(e);
+        }
+    }
+
+    <R> R record(String dependency, String operation, Call<R> call) throws Throwable {
+        inFlight.labels(dependency).inc();
+        long start = System.nanoTime();
+        String outcome = "error";
+        try {
+            R result = call.call();
+            outcome = "success";
+            return result;
+        } finally {
+            latency.labels(dependency, operation)
+                    .observe((System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1));
+            calls.labels(dependency, operation, outcome).inc();
+            inFlight.labels(dependency).dec();
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    @FunctionalInterface
+    interface Call<R> {
+        R call() throws Throwable;
+    }
+}
@@ -16,17 +16,14 @@
 package org.trustedanalytics.usermanagement.metrics;
 
 import io.prometheus.client.Gauge;
-import org.cloudfoundry.identity.uaa.rest.SearchResults;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
-import org.trustedanalytics.uaa.UaaOperations;
 import org.trustedanalytics.usermanagement.orgs.service.OrganizationsStorage;
+import org.trustedanalytics.usermanagement.users.rest.UaaScimOperations;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
-import java.util.Collection;
-import java.util.Optional;
 
 public class MetricsCollector {
 
@@ -34,16 +31,16 @@ public class MetricsCollector {
 
     private final int metricsRefreshDelay;
     private final Gauge counts;
-    private final UaaOperations uaaPrivilegedClient;
+    private final UaaScimOperations uaaPrivilegedScimClient;
     private final OrganizationsStorage organizationsStorage;
 
     private ThreadPoolTaskScheduler scheduler;
 
-    public MetricsCollector(int metricsRefreshDelay, Gauge counts, UaaOperations uaaPrivilegedClient,
+    public MetricsCollector(int metricsRefreshDelay, Gauge counts, UaaScimOperations uaaPrivilegedScimClient,
                             OrganizationsStorage organizationsStorage) {
         this.metricsRefreshDelay = metricsRefreshDelay;
         this.counts = counts;
-        this.uaaPrivilegedClient = uaaPrivilegedClient;
+        this.uaaPrivilegedScimClient = uaaPrivilegedScimClient;
         this.organizationsStorage = organizationsStorage;
     }
 
@@ -66,13 +63,10 @@ public class MetricsCollector {
     }
 
     private void collectUsers() {
-        Optional<Integer> usersCount = Optional.ofNullable(uaaPrivilegedClient.getUsers())
-                .map(SearchResults::getResources)
-                .map(Collection::size);
-        if (usersCount.isPresent()) {
-            counts.labels("users").set(usersCount.get());
-        } else {
-            LOGGER.warn("Unable to set users metric: null response when getting users from UAA");
+        try {
+            counts.labels("users").set(uaaPrivilegedScimClient.countUsers());
+        } catch (Exception e) {
+            LOGGER.warn("Unable to set users metric: counting users in UAA failed", e);
         }
     }
 
@@ -18,10 +18,12 @@ package org.trustedanalytics.usermanagement.metrics;
 import io.prometheus.client.Gauge;
 import io.prometheus.client.spring.boot.EnablePrometheusEndpoint;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.embedded.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.trustedanalytics.uaa.UaaOperations;
+import org.springframework.core.Ordered;
 import org.trustedanalytics.usermanagement.orgs.service.OrganizationsStorage;
+import org.trustedanalytics.usermanagement.users.rest.UaaScimOperations;
 
 @Configuration
 @EnablePrometheusEndpoint
@@ -33,6 +35,9 @@ public class MetricsConfiguration {
     @Value("${metrics.name}")
     private String metricsName;
 
+    @Value("${metrics.prefix:tap_usermanagement}")
+    private String metricsPrefix;
+
     @Bean
     public Gauge getCounts() {
         return Gauge.build()
@@ -43,9 +48,29 @@ public class MetricsConfiguration {
     }
 
     @Bean
-    public MetricsCollector getMetricsCollector(Gauge counts, UaaOperations uaaPrivilegedClient,
+    public DependencyMetrics dependencyMetrics() {
+        return new DependencyMetrics(metricsPrefix);
+    }
+
+    @Bean
+    public OutboxMetrics outboxMetrics() {
+        return new OutboxMetrics(metricsPrefix);
+    }
+
+    /**
+     * Registered first, so that requests rejected by the security filters are recorded as well.
+     */
+    @Bean
+    public FilterRegistrationBean requestMetricsFilter() {
+        FilterRegistrationBean registration = new FilterRegistrationBean(new RequestMetricsFilter(metricsPrefix));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public MetricsCollector getMetricsCollector(Gauge counts, UaaScimOperations uaaPrivilegedScimClient,
                                                 OrganizationsStorage organizationsStorage) {
-        return new MetricsCollector(metricsRefreshDelay, counts, uaaPrivilegedClient, organizationsStorage);
+        return new MetricsCollector(metricsRefreshDelay, counts, uaaPrivilegedScimClient, organizationsStorage);
     }
 }
 
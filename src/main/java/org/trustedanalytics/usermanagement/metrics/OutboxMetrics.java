@@ -0,0 +1,71 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.metrics;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+
+import java.time.Duration;
+
+/**
+ * Queue depth, dead letter count, delivery latency and delivery outcomes of the email outbox.
+ */
+public class OutboxMetrics {
+
+    private final Gauge messages;
+    private final Histogram deliveryLatency;
+    private final Counter attempts;
+
+    public OutboxMetrics(String namePrefix) {
+        messages = Gauge.build()
+                .name(namePrefix + "_outbox_messages")
+                .labelNames("state")
+                .help("Number of emails waiting in the outbox or moved to the dead letters.")
+                .register();
+        deliveryLatency = Histogram.build()
+                .name(namePrefix + "_outbox_delivery_latency_seconds")
+                .buckets(1, 5, 30, 60, 300, 1800, 3600, 21600)
+                .help("Time from queueing an email until it was delivered, in seconds.")
+                .register();
+        attempts = Counter.build()
+                .name(namePrefix + "_outbox_delivery_attempts_total")
+                .labelNames("outcome")
+                .help("Number of email delivery attempts by outcome: delivered, retried or dead_lettered.")
+                .register();
+    }
+
+    public void queued(long count) {
+        messages.labels("queued").set(count);
+    }
+
+    public void deadLetters(long count) {
+        messages.labels("dead_letter").set(count);
+    }
+
+    public void delivered(Duration latency) {
+        deliveryLatency.observe(latency.toMillis() / 1000.0);
+        attempts.labels("delivered").inc();
+    }
+
+    public void retried() {
+        attempts.labels("retried").inc();
+    }
+
+    public void deadLettered() {
+        attempts.labels("dead_lettered").inc();
+    }
+}
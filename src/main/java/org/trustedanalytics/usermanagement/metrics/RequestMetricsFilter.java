@@ -0,0 +1,182 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.metrics;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records count, latency and response size of requests per handler mapping pattern, e.g.
+ * /rest/orgs/{org}/users, so that raw paths never become label values. Requests not handled by a
+ * controller are recorded under the "unmatched" route.
+ */
+public class RequestMetricsFilter extends OncePerRequestFilter {
+
+    private static final String UNMATCHED_ROUTE = "unmatched";
+    private static final Set<String> KNOWN_METHODS =
+            new HashSet<>(Arrays.asList("GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
+
+    private final Histogram latency;
+    private final Counter requests;
+    private final Histogram responseSize;
+
+    public RequestMetricsFilter(String namePrefix) {
+        latency = Histogram.build()
+                .name(namePrefix + "_http_request_duration_seconds")
+                .labelNames("method", "route")
+                .help("Duration of HTTP requests in seconds.")
+                .register();
+        requests = Counter.build()
+                .name(namePrefix + "_http_requests_total")
+                .labelNames("method", "route", "status")
+                .help("Number of HTTP requests by status class.")
+                .register();
+        responseSize = Histogram.build()
+                .name(namePrefix + "_http_response_size_bytes")
+                .labelNames("method", "route")
+                .buckets(100, 1000, 10000, 100000, 1000000, 10000000)
+                .help("Size of HTTP response bodies in bytes.")
+                .register();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CountingResponse countingResponse = new CountingResponse(response);
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, countingResponse);
+            failed = false;
+        } finally {
+            double seconds = (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+            String method = KNOWN_METHODS.contains(request.getMethod()) ? request.getMethod() : "OTHER";
+            String route = route(request);
+            String status = failed ? "5xx" : response.getStatus() / 100 + "xx";
+            latency.labels(method, route).observe(seconds);
+            requests.labels(method, route, status).inc();
+            responseSize.labels(method, route).observe(countingResponse.getBytesWritten());
+        }
+    }
+
+    private static String route(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return pattern == null ? UNMATCHED_ROUTE : pattern.toString();
+    }
+
+    private static class CountingResponse extends HttpServletResponseWrapper {
+        private long bytesWritten;
+        private ServletOutputStream outputStream;
+        private PrintWriter writer;
+
+        CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        long getBytesWritten() {
+            if (writer != null) {
+                writer.flush();
+            }
+            return bytesWritten;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new CountingOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), charset()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            super.flushBuffer();
+        }
+
+        private String charset() throws UnsupportedEncodingException {
+            return getCharacterEncoding() == null ? "ISO-8859-1" : getCharacterEncoding();
+        }
+
+        private class CountingOutputStream extends ServletOutputStream {
+            private final ServletOutputStream delegate;
+
+            CountingOutputStream(ServletOutputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                delegate.write(b);
+                bytesWritten++;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                delegate.write(b, off, len);
+                bytesWritten += len;
+            }
+
+            @Override
+            public void flush() throws IOException {
+                delegate.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                delegate.close();
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                delegate.setWriteListener(writeListener);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.security;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.security.oauth2.client.OAuth2RestTemplate;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.trustedanalytics.usermanagement.metrics.DependencyMetrics;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Keeps the client_credentials token shared by all privileged calls. The token is refreshed in the
+ * background shortly before it expires, so callers only wait for UAA when there is no valid token at
+ * all (on the first call, or after background refreshes kept failing). Concurrent refreshes are
+ * collapsed into one.
+ */
+public class ClientCredentialsTokenCache implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientCredentialsTokenCache.class);
+
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(5);
+
+    private final Supplier<OAuth2AccessToken> tokenSource;
+    private final Duration refreshMargin;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+
+    private volatile OAuth2AccessToken token;
+
+    public ClientCredentialsTokenCache(OAuth2ProtectedResourceDetails clientCredentials, Duration refreshMargin,
+                                       DependencyMetrics dependencyMetrics) {
+        this(() -> dependencyMetrics.time("uaa", "getClientCredentialsToken",
+                () -> new OAuth2RestTemplate(clientCredentials).getAccessToken()),
+                refreshMargin, Clock.systemUTC());
+    }
+
+    ClientCredentialsTokenCache(Supplier<OAuth2AccessToken> tokenSource, Duration refreshMargin, Clock clock) {
+        this.tokenSource = tokenSource;
+        this.refreshMargin = refreshMargin;
+        this.clock = clock;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("client-token-refresh-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    public String getToken() {
+        OAuth2AccessToken current = token;
+        if (current == null || isExpired(current)) {
+            current = refresh(current);
+        }
+        return current.getValue();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Obtains a new token unless another thread already replaced the stale one while this one waited.
+     */
+    private synchronized OAuth2AccessToken refresh(OAuth2AccessToken stale) {
+        if (token != stale) {
+            return token;
+        }
+        OAuth2AccessToken fresh = tokenSource.get();
+        token = fresh;
+        scheduleRefresh(fresh);
+        return fresh;
+    }
+
+    private void scheduleRefresh(OAuth2AccessToken current) {
+        if (current.getExpiration() == null) {
+            return;
+        }
+        long delay = current.getExpiration().getTime() - refreshMargin.toMillis() - clock.millis();
+        scheduler.schedule(() -> refreshInBackground(current), Math.max(delay, 0), TimeUnit.MILLISECONDS);
+    }
+
+    private void refreshInBackground(OAuth2AccessToken current) {
+        try {
+            refresh(current);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to refresh client credentials token, retrying in " + RETRY_DELAY, e);
+            if (!isExpired(current)) {
+                scheduler.schedule(() -> refreshInBackground(current), RETRY_DELAY.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private boolean isExpired(OAuth2AccessToken current) {
+        return current.getExpiration() != null && current.getExpiration().getTime() <= clock.millis();
+    }
+}
@@ -18,23 +18,18 @@ package org.trustedanalytics.usermanagement.security;
 
 import feign.RequestInterceptor;
 import feign.RequestTemplate;
-import org.springframework.security.oauth2.client.OAuth2RestTemplate;
-import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
-import org.springframework.security.oauth2.common.OAuth2AccessToken;
 
 
 public class OAuth2PrivilegedInterceptor implements RequestInterceptor {
 
-    private final OAuth2ProtectedResourceDetails clientCredentials;
+    private final ClientCredentialsTokenCache tokenCache;
 
-    public OAuth2PrivilegedInterceptor(OAuth2ProtectedResourceDetails clientCredentials) {
-        this.clientCredentials = clientCredentials;
+    public OAuth2PrivilegedInterceptor(ClientCredentialsTokenCache tokenCache) {
+        this.tokenCache = tokenCache;
     }
 
     @Override
     public void apply(RequestTemplate requestTemplate) {
-        OAuth2RestTemplate rt = new OAuth2RestTemplate(clientCredentials);
-        OAuth2AccessToken accessToken = rt.getAccessToken();
-        requestTemplate.header("Authorization", "bearer "+accessToken.getValue());
+        requestTemplate.header("Authorization", "bearer "+tokenCache.getToken());
     }
 }
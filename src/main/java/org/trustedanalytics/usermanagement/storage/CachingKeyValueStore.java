@@ -0,0 +1,255 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.storage;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Near-cache in front of another store. Values read by key are kept in a bounded local cache for a
+ * short time. Every write through this store drops the local entry and publishes an invalidation
+ * message, which other replicas pass to {@link #onInvalidation(String)}. The cache ttl bounds
+ * staleness when a message is lost, and also how long an entry expired in the delegate may be served.
+ *
+ * Cache keys and invalidation messages are digests of the store keys, so the keys (e.g. security
+ * codes) are never broadcast.
+ */
+public class CachingKeyValueStore<T> implements KeyValueStore<T> {
+
+    static final String INVALIDATE_ALL = "*";
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingKeyValueStore.class);
+
+    private final KeyValueStore<T> delegate;
+    private final Cache<String, T> cache;
+    private final Function<String, String> keyDigest;
+    private final Consumer<String> invalidationPublisher;
+    private final Object lock = new Object();
+
+    private long invalidations;
+
+    public CachingKeyValueStore(KeyValueStore<T> delegate, long maximumSize, Duration ttl,
+                                Function<String, String> keyDigest, Consumer<String> invalidationPublisher) {
+        this.delegate = delegate;
+        this.cache = CacheBuilder.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(ttl.toMillis(), TimeUnit.MILLISECONDS)
+                .build();
+        this.keyDigest = keyDigest;
+        this.invalidationPublisher = invalidationPublisher;
+    }
+
+    @Override
+    public boolean hasKey(String key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public T get(String key) {
+        String digest = keyDigest.apply(key);
+        T value = cache.getIfPresent(digest);
+        if (value != null) {
+            return value;
+        }
+        long version = version();
+        value = delegate.get(key);
+        if (value != null) {
+            cacheIfNotInvalidated(digest, value, version);
+        }
+        return value;
+    }
+
+    @Override
+    public Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> found = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String key : keys) {
+            T value = cache.getIfPresent(keyDigest.apply(key));
+            if (value != null) {
+                found.put(key, value);
+            } else {
+                missing.add(key);
+            }
+        }
+        if (!missing.isEmpty()) {
+            long version = version();
+            Map<String, T> loaded = delegate.getAll(missing);
+            loaded.forEach((key, value) -> cacheIfNotInvalidated(keyDigest.apply(key), value, version));
+            found.putAll(loaded);
+        }
+        return found;
+    }
+
+    @Override
+    public void remove(String key) {
+        delegate.remove(key);
+        invalidate(key);
+    }
+
+    @Override
+    public T getAndRemove(String key) {
+        T value = delegate.getAndRemove(key);
+        invalidate(key);
+        return value;
+    }
+
+    @Override
+    public void removeAll(Collection<String> keys) {
+        delegate.removeAll(keys);
+        keys.forEach(this::invalidate);
+    }
+
+    @Override
+    public void put(String key, T value) {
+        delegate.put(key, value);
+        invalidate(key);
+    }
+
+    @Override
+    public void put(String key, T value, Duration ttl) {
+        delegate.put(key, value, ttl);
+        invalidate(key);
+    }
+
+    @Override
+    public void putAll(Map<String, T> values, Duration ttl) {
+        delegate.putAll(values, ttl);
+        values.keySet().forEach(this::invalidate);
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, T value) {
+        return invalidateIf(key, delegate.putIfAbsent(key, value));
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, T value, Duration ttl) {
+        return invalidateIf(key, delegate.putIfAbsent(key, value, ttl));
+    }
+
+    @Override
+    public T compute(String key, UnaryOperator<T> remappingFunction, Duration ttl) {
+        T value = delegate.compute(key, remappingFunction, ttl);
+        invalidate(key);
+        return value;
+    }
+
+    @Override
+    public int purgeExpired() {
+        int purged = delegate.purgeExpired();
+        if (purged > 0) {
+            invalidateLocally(INVALIDATE_ALL);
+            publish(INVALIDATE_ALL);
+        }
+        return purged;
+    }
+
+    @Override
+    public Collection<T> values() {
+        return delegate.values();
+    }
+
+    @Override
+    public boolean ping() {
+        return delegate.ping();
+    }
+
+    @Override
+    public long size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void scan(int batchSize, Consumer<T> consumer) {
+        delegate.scan(batchSize, consumer);
+    }
+
+    @Override
+    public Optional<T> findByIndex(String indexKey) {
+        return delegate.findByIndex(indexKey);
+    }
+
+    /**
+     * Handles an invalidation message published by another replica.
+     */
+    public void onInvalidation(String message) {
+        invalidateLocally(message);
+    }
+
+    private boolean invalidateIf(String key, boolean changed) {
+        if (changed) {
+            invalidate(key);
+        }
+        return changed;
+    }
+
+    private void invalidate(String key) {
+        String digest = keyDigest.apply(key);
+        invalidateLocally(digest);
+        publish(digest);
+    }
+
+    private void publish(String message) {
+        try {
+            invalidationPublisher.accept(message);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Unable to publish near-cache invalidation, other replicas may serve stale entries", e);
+        }
+    }
+
+    private void invalidateLocally(String message) {
+        synchronized (lock) {
+            invalidations++;
+            if (INVALIDATE_ALL.equals(message)) {
+                cache.invalidateAll();
+            } else {
+                cache.invalidate(message);
+            }
+        }
+    }
+
+    private long version() {
+        synchronized (lock) {
+            return invalidations;
+        }
+    }
+
+    /**
+     * A value loaded from the delegate is cached only when no invalidation happened during the load,
+     * since it might have been read before a concurrent write.
+     */
+    private void cacheIfNotInvalidated(String digest, T value, long version) {
+        synchronized (lock) {
+            if (invalidations == version) {
+                cache.put(digest, value);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.storage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.List;
+
+public class ExpiredEntriesReaper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ExpiredEntriesReaper.class);
+
+    private final int reaperDelay;
+    private final List<KeyValueStore<?>> stores;
+
+    private ThreadPoolTaskScheduler scheduler;
+
+    public ExpiredEntriesReaper(int reaperDelay, List<KeyValueStore<?>> stores) {
+        this.reaperDelay = reaperDelay;
+        this.stores = stores;
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setAwaitTerminationSeconds(1);
+        scheduler.afterPropertiesSet();
+        scheduler.scheduleWithFixedDelay(this::purge, reaperDelay);
+    }
+
+    @PreDestroy
+    public void finish() {
+        scheduler.shutdown();
+    }
+
+    public void purge() {
+        for (KeyValueStore<?> store : stores) {
+            try {
+                int purged = store.purgeExpired();
+                if (purged > 0) {
+                    LOGGER.debug("Purged {} expired entries", purged);
+                }
+            } catch (RuntimeException e) {
+                LOGGER.warn("Unable to purge expired entries", e);
+            }
+        }
+    }
+}
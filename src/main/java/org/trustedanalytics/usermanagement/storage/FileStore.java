@@ -0,0 +1,500 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.storage;
+
+import com.google.common.io.BaseEncoding;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.zip.CRC32;
+
+/**
+ * Durable store for single node deployments without Redis. Every mutation is appended to a log file
+ * and fsynced before it becomes visible; when the write or the fsync fails the log is cut back and the
+ * in-memory state is left untouched. The current state is kept in an {@link InMemoryStore} and
+ * rebuilt by replaying the log on startup. Keys and values go through the same serializers as in
+ * Redis, so the file contains only hashed keys and (for security codes) encrypted values.
+ *
+ * Record layout: length (int), CRC32 of the payload (int), payload: type (byte), expiration time in
+ * epoch millis or 0 (long), key length (int), key, value length (int), value. A truncated or corrupted
+ * last record, or a zero-filled tail, is what a crash during an append leaves behind, so replay cuts it off. A corrupted record
+ * anywhere else means the file was damaged; skipping it could bring back a removed entry, so the store
+ * refuses to open instead. purgeExpired() also compacts the log once it holds mostly dead records.
+ */
+public class FileStore<T> implements KeyValueStore<T>, Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(FileStore.class);
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+    private static final byte[] NO_VALUE = new byte[0];
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final int MIN_COMPACTION_RECORDS = 1000;
+
+    private final Path file;
+    private final Path compactionFile;
+    private final RedisSerializer<String> keySerializer;
+    private final RedisSerializer<T> valueSerializer;
+    private final Clock clock;
+    private final InMemoryStore<T> entries;
+    private final ConcurrentMap<String, Long> expirations = new ConcurrentHashMap<>();
+    private final Object writeLock = new Object();
+    private final List<Runnable> pending = new ArrayList<>();
+
+    private volatile FileChannel log;
+    private long records;
+
+    public FileStore(Path file, RedisSerializer<String> keySerializer, RedisSerializer<T> valueSerializer,
+                     Function<T, String> indexer) {
+        this(file, keySerializer, valueSerializer, indexer, Clock.systemUTC());
+    }
+
+    FileStore(Path file, RedisSerializer<String> keySerializer, RedisSerializer<T> valueSerializer,
+              Function<T, String> indexer, Clock clock) {
+        this.file = file.toAbsolutePath();
+        this.compactionFile = this.file.resolveSibling(this.file.getFileName() + ".compact");
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.clock = clock;
+        this.entries = new InMemoryStore<>(indexer, 0, clock);
+        try {
+            Files.createDirectories(this.file.getParent());
+            Files.deleteIfExists(compactionFile);
+            replay();
+            log = openLog();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open store " + this.file, e);
+        }
+    }
+
+    @Override
+    public boolean hasKey(String key) {
+        return entries.hasKey(digest(key));
+    }
+
+    @Override
+    public T get(String key) {
+        return entries.get(digest(key));
+    }
+
+    @Override
+    public Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> found = new HashMap<>();
+        for (String key : keys) {
+            T value = get(key);
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void remove(String key) {
+        write(() -> delete(digest(key)));
+    }
+
+    @Override
+    public T getAndRemove(String key) {
+        return write(() -> {
+            String digest = digest(key);
+            T value = entries.get(digest);
+            delete(digest);
+            return value;
+        });
+    }
+
+    @Override
+    public void removeAll(Collection<String> keys) {
+        write(() -> {
+            for (String key : keys) {
+                delete(digest(key));
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void put(String key, T value) {
+        put(key, value, null);
+    }
+
+    @Override
+    public void put(String key, T value, Duration ttl) {
+        write(() -> store(digest(key), value, ttl));
+    }
+
+    @Override
+    public void putAll(Map<String, T> values, Duration ttl) {
+        write(() -> {
+            for (Map.Entry<String, T> entry : values.entrySet()) {
+                store(digest(entry.getKey()), entry.getValue(), ttl);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, T value) {
+        return putIfAbsent(key, value, null);
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, T value, Duration ttl) {
+        return write(() -> {
+            String digest = digest(key);
+            if (entries.hasKey(digest)) {
+                return false;
+            }
+            store(digest, value, ttl);
+            return true;
+        });
+    }
+
+    @Override
+    public T compute(String key, UnaryOperator<T> remappingFunction, Duration ttl) {
+        return write(() -> {
+            String digest = digest(key);
+            T value = remappingFunction.apply(entries.get(digest));
+            if (value == null) {
+                delete(digest);
+            } else {
+                store(digest, value, ttl);
+            }
+            return value;
+        });
+    }
+
+    @Override
+    public int purgeExpired() {
+        return write(() -> {
+            int purged = entries.purgeExpired();
+            long now = clock.millis();
+            expirations.entrySet().removeIf(expiration ->
+                    expiration.getValue() <= now && !entries.contains(expiration.getKey()));
+            if (records >= MIN_COMPACTION_RECORDS && records > 2 * entries.size()) {
+                compactLocked();
+            }
+            return purged;
+        });
+    }
+
+    @Override
+    public Collection<T> values() {
+        return entries.values();
+    }
+
+    @Override
+    public boolean ping() {
+        return log.isOpen();
+    }
+
+    @Override
+    public long size() {
+        return entries.size();
+    }
+
+    @Override
+    public void scan(int batchSize, Consumer<T> consumer) {
+        entries.scan(batchSize, consumer);
+    }
+
+    @Override
+    public Optional<T> findByIndex(String indexKey) {
+        return entries.findByIndex(indexKey);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (writeLock) {
+            log.close();
+        }
+    }
+
+    /**
+     * Rewrites the log with a single record per live entry and atomically replaces the old one.
+     */
+    void compact() {
+        write(this::compactLocked);
+    }
+
+    private Void compactLocked() throws IOException {
+        long now = clock.millis();
+        long written = 0;
+        try (FileChannel out = FileChannel.open(compactionFile, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<String, T> entry : entries.entrySet()) {
+                long expiresAt = expirations.getOrDefault(entry.getKey(), 0L);
+                if (expiresAt == 0 || expiresAt > now) {
+                    writeFully(out, record(PUT, rawKey(entry.getKey()), valueSerializer.serialize(entry.getValue()),
+                            expiresAt));
+                    written++;
+                }
+            }
+            out.force(true);
+        }
+        try {
+            log.close();
+            try {
+                Files.move(compactionFile, file, StandardCopyOption.ATOMIC_MOVE);
+                // the rename is durable only once the directory entry reaches the disk
+                try (FileChannel directory = FileChannel.open(file.getParent(), StandardOpenOption.READ)) {
+                    directory.force(true);
+                }
+            } finally {
+                // keep appending to whichever file is in place now, the compacted one or the old one
+                log = openLog();
+            }
+        } finally {
+            Files.deleteIfExists(compactionFile);
+        }
+        LOGGER.info("Compacted {} from {} to {} records", file, records, written);
+        records = written;
+        return null;
+    }
+
+    private Void store(String digest, T value, Duration ttl) throws IOException {
+        long expiresAt = ttl == null || ttl.isZero() || ttl.isNegative() ? 0 : clock.millis() + ttl.toMillis();
+        append(record(PUT, rawKey(digest), valueSerializer.serialize(value), expiresAt));
+        pending.add(() -> {
+            entries.put(digest, value, ttl);
+            if (expiresAt > 0) {
+                expirations.put(digest, expiresAt);
+            } else {
+                expirations.remove(digest);
+            }
+        });
+        return null;
+    }
+
+    private Void delete(String digest) throws IOException {
+        if (entries.hasKey(digest)) {
+            append(record(REMOVE, rawKey(digest), NO_VALUE, 0));
+        }
+        pending.add(() -> {
+            entries.remove(digest);
+            expirations.remove(digest);
+        });
+        return null;
+    }
+
+    private void replay() throws IOException {
+        if (!Files.exists(file)) {
+            return;
+        }
+        long validLength = 0;
+        try (FileChannel in = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            while (true) {
+                long offset = in.position();
+                header.clear();
+                if (readFully(in, header) < HEADER_BYTES) {
+                    break;
+                }
+                header.flip();
+                int length = header.getInt();
+                int checksum = header.getInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) {
+                    // a file system may leave a zero-filled tail behind a torn append
+                    if (!onlyZerosFollow(in)) {
+                        throw corrupted(offset);
+                    }
+                    break;
+                }
+                ByteBuffer payload = ByteBuffer.allocate(length);
+                if (readFully(in, payload) < length) {
+                    break;
+                }
+                if (checksum(payload.array(), 0, length) != checksum) {
+                    if (in.position() < in.size()) {
+                        throw corrupted(offset);
+                    }
+                    break;
+                }
+                payload.flip();
+                apply(payload);
+                validLength = in.position();
+                records++;
+            }
+        }
+        if (validLength < Files.size(file)) {
+            LOGGER.warn("Discarding {} bytes of an incomplete record at the end of {}",
+                    Files.size(file) - validLength, file);
+            try (FileChannel out = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                out.truncate(validLength);
+            }
+        }
+        LOGGER.info("Replayed {} records of {}", records, file);
+    }
+
+    private static boolean onlyZerosFollow(FileChannel in) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        while (in.read(buffer) > 0) {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                if (buffer.get() != 0) {
+                    return false;
+                }
+            }
+            buffer.clear();
+        }
+        return true;
+    }
+
+    private IOException corrupted(long offset) {
+        return new IOException(String.format("Corrupted record at offset %d of %s", offset, file));
+    }
+
+    private void apply(ByteBuffer payload) {
+        byte type = payload.get();
+        long expiresAt = payload.getLong();
+        byte[] key = new byte[payload.getInt()];
+        payload.get(key);
+        byte[] value = new byte[payload.getInt()];
+        payload.get(value);
+
+        String digest = BaseEncoding.base64().encode(key);
+        long now = clock.millis();
+        if (type == PUT && (expiresAt == 0 || expiresAt > now)) {
+            entries.put(digest, valueSerializer.deserialize(value),
+                    expiresAt == 0 ? null : Duration.ofMillis(expiresAt - now));
+            if (expiresAt > 0) {
+                expirations.put(digest, expiresAt);
+            } else {
+                expirations.remove(digest);
+            }
+        } else {
+            entries.remove(digest);
+            expirations.remove(digest);
+        }
+    }
+
+    private void append(ByteBuffer record) throws IOException {
+        // a torn record is cut off by write(), so that it does not end up in front of the following ones
+        writeFully(log, record);
+        records++;
+    }
+
+    private <R> R write(LogWrite<R> action) {
+        synchronized (writeLock) {
+            pending.clear();
+            long start = -1;
+            long recordsBefore = records;
+            try {
+                start = log.position();
+                R result = action.apply();
+                log.force(false);
+                // only what reached the disk becomes visible
+                pending.forEach(Runnable::run);
+                return result;
+            } catch (IOException e) {
+                rollback(start, recordsBefore, e);
+                throw new UncheckedIOException("Unable to write store " + file, e);
+            } catch (RuntimeException e) {
+                rollback(start, recordsBefore, e);
+                throw e;
+            } finally {
+                pending.clear();
+            }
+        }
+    }
+
+    private void rollback(long start, long recordsBefore, Exception cause) {
+        try {
+            if (start >= 0 && log.isOpen() && log.size() > start) {
+                log.truncate(start);
+                log.force(false);
+            }
+            records = recordsBefore;
+        } catch (IOException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    private FileChannel openLog() throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        return channel;
+    }
+
+    private String digest(String key) {
+        return BaseEncoding.base64().encode(keySerializer.serialize(key));
+    }
+
+    private static byte[] rawKey(String digest) {
+        return BaseEncoding.base64().decode(digest);
+    }
+
+    private static ByteBuffer record(byte type, byte[] key, byte[] value, long expiresAt) {
+        int length = 1 + 8 + 4 + key.length + 4 + value.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + length);
+        buffer.putInt(length).putInt(0)
+                .put(type).putLong(expiresAt)
+                .putInt(key.length).put(key)
+                .putInt(value.length).put(value);
+        buffer.putInt(4, checksum(buffer.array(), HEADER_BYTES, length));
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int checksum(byte[] bytes, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, offset, length);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static int readFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+            // keep reading until the buffer is full or the end of file is reached
+        }
+        return buffer.position();
+    }
+
+    @FunctionalInterface
+    private interface LogWrite<R> {
+        R apply() throws IOException;
+    }
+}
@@ -15,40 +15,306 @@
  */
 package org.trustedanalytics.usermanagement.storage;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Striped;
+
+import java.time.Clock;
+import java.time.Duration;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
 
+/**
+ * Thread-safe store backed by ConcurrentHashMap. Reads are lock-free, writes to the same key are
+ * serialized by a striped lock so that the value, the secondary index and the size counter stay
+ * consistent. A positive capacity makes inserts of new keys fail once the store is full.
+ *
+ * Expiring entries are tracked in a timer wheel with one second ticks and removed by purgeExpired().
+ * Reads, values() and scan() skip entries that expired but were not purged yet.
+ */
 public class InMemoryStore<T> implements KeyValueStore<T> {
-    private final Map<String, T> valuesMap = new HashMap<>();
+    private static final int LOCK_STRIPES = 64;
+    private static final int WHEEL_SIZE = 512;
+    private static final long WHEEL_TICK_MILLIS = 1000;
+
+    private final ConcurrentMap<String, T> valuesMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, String> index = new ConcurrentHashMap<>();
+    private final Striped<Lock> locks = Striped.lock(LOCK_STRIPES);
+    private final ConcurrentMap<String, Long> deadlines = new ConcurrentHashMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final Function<T, String> indexer;
+    private final int capacity;
+    private final Clock clock;
+    private final TimerWheel expiryWheel;
+
+    public InMemoryStore() {
+        this(null);
+    }
+
+    public InMemoryStore(Function<T, String> indexer) {
+        this(indexer, 0);
+    }
+
+    public InMemoryStore(Function<T, String> indexer, int capacity) {
+        this(indexer, capacity, Clock.systemUTC());
+    }
+
+    InMemoryStore(Function<T, String> indexer, int capacity, Clock clock) {
+        this.indexer = indexer;
+        this.capacity = capacity;
+        this.clock = clock;
+        this.expiryWheel = new TimerWheel(WHEEL_SIZE, WHEEL_TICK_MILLIS, clock.millis());
+    }
 
     @Override
     public boolean hasKey(String key) {
-        return valuesMap.containsKey(key);
+        return valuesMap.containsKey(key) && !isExpired(key);
     }
 
     @Override
     public T get(String key) {
-        return valuesMap.get(key);
+        T value = valuesMap.get(key);
+        return value == null || isExpired(key) ? null : value;
     }
 
     @Override
     public void remove(String key) {
-        valuesMap.remove(key);
+        withLock(key, () -> {
+            removeLocked(key);
+            return null;
+        });
+    }
+
+    @Override
+    public T getAndRemove(String key) {
+        return withLock(key, () -> {
+            T value = get(key);
+            removeLocked(key);
+            return value;
+        });
     }
 
     @Override
     public void put(String key, T value) {
-        valuesMap.put(key, value);
+        put(key, value, null);
+    }
+
+    @Override
+    public void put(String key, T value, Duration ttl) {
+        withLock(key, () -> {
+            putLocked(key, value, ttl);
+            return null;
+        });
     }
 
     @Override
     public boolean putIfAbsent(String key, T value) {
-        return valuesMap.putIfAbsent(key, value) == null;
+        return putIfAbsent(key, value, null);
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, T value, Duration ttl) {
+        return withLock(key, () -> {
+            if (isExpired(key)) {
+                removeLocked(key);
+            }
+            if (valuesMap.containsKey(key)) {
+                return false;
+            }
+            putLocked(key, value, ttl);
+            return true;
+        });
+    }
+
+    @Override
+    public Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> found = new HashMap<>();
+        for (String key : keys) {
+            T value = get(key);
+            if (value != null) {
+                found.put(key, value);
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void putAll(Map<String, T> values, Duration ttl) {
+        values.forEach((key, value) -> put(key, value, ttl));
+    }
+
+    @Override
+    public void removeAll(Collection<String> keys) {
+        keys.forEach(this::remove);
     }
 
+    @Override
+    public T compute(String key, UnaryOperator<T> remappingFunction, Duration ttl) {
+        return withLock(key, () -> {
+            T value = remappingFunction.apply(get(key));
+            if (value == null) {
+                removeLocked(key);
+            } else {
+                putLocked(key, value, ttl);
+            }
+            return value;
+        });
+    }
+
+    @Override
+    public int purgeExpired() {
+        int purged = 0;
+        for (String key : expiryWheel.advance(clock.millis())) {
+            boolean expired = withLock(key, () -> {
+                Long deadline = deadlines.get(key);
+                if (deadline == null) {
+                    return false;
+                }
+                if (deadline > clock.millis()) {
+                    expiryWheel.schedule(key, deadline);
+                    return false;
+                }
+                removeLocked(key);
+                return true;
+            });
+            purged += expired ? 1 : 0;
+        }
+        return purged;
+    }
+
+    /**
+     * Returns an immutable copy of the values that have not expired, taken in a single pass, so its size
+     * and repeated iterations agree. Writes made while copying may or may not be included.
+     */
     @Override
     public Collection<T> values() {
-        return valuesMap.values();
+        ImmutableList.Builder<T> live = ImmutableList.builder();
+        valuesMap.forEach((key, value) -> {
+            if (!isExpired(key)) {
+                live.add(value);
+            }
+        });
+        return live.build();
+    }
+
+    @Override
+    public boolean ping() {
+        return true;
+    }
+
+    @Override
+    public long size() {
+        return size.get();
+    }
+
+    @Override
+    public void scan(int batchSize, Consumer<T> consumer) {
+        valuesMap.forEach((key, value) -> {
+            if (!isExpired(key)) {
+                consumer.accept(value);
+            }
+        });
+    }
+
+    @Override
+    public Optional<T> findByIndex(String indexKey) {
+        if (indexer == null) {
+            throw new UnsupportedOperationException("Store has no secondary index");
+        }
+        return Optional.ofNullable(index.get(indexKey))
+                .map(this::get)
+                .filter(value -> Objects.equals(indexKey, indexer.apply(value)));
+    }
+
+    /**
+     * Tells whether the key is stored, even if it has already expired.
+     */
+    boolean contains(String key) {
+        return valuesMap.containsKey(key);
+    }
+
+    /**
+     * Live view of all entries, including expired ones that were not purged yet.
+     */
+    Set<Map.Entry<String, T>> entrySet() {
+        return Collections.unmodifiableSet(valuesMap.entrySet());
+    }
+
+    private void putLocked(String key, T value, Duration ttl) {
+        T previous = valuesMap.get(key);
+        if (previous == null) {
+            reserveCapacity();
+        }
+        valuesMap.put(key, value);
+        index(key, value);
+        if (previous != null && !Objects.equals(indexKey(previous), indexKey(value))) {
+            unindex(key, previous);
+        }
+        if (ttl == null || ttl.isZero() || ttl.isNegative()) {
+            deadlines.remove(key);
+        } else {
+            long deadline = clock.millis() + ttl.toMillis();
+            deadlines.put(key, deadline);
+            expiryWheel.schedule(key, deadline);
+        }
+    }
+
+    private void removeLocked(String key) {
+        T previous = valuesMap.remove(key);
+        deadlines.remove(key);
+        if (previous != null) {
+            size.decrementAndGet();
+            unindex(key, previous);
+        }
+    }
+
+    private boolean isExpired(String key) {
+        Long deadline = deadlines.get(key);
+        return deadline != null && deadline <= clock.millis();
+    }
+
+    private <R> R withLock(String key, Supplier<R> action) {
+        Lock lock = locks.get(key);
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reserveCapacity() {
+        if (size.incrementAndGet() > capacity && capacity > 0) {
+            size.decrementAndGet();
+            throw new StoreCapacityExceededException("Store capacity of " + capacity + " entries exceeded");
+        }
+    }
+
+    private String indexKey(T value) {
+        return indexer == null ? null : indexer.apply(value);
+    }
+
+    private void index(String key, T value) {
+        if (indexer != null) {
+            index.put(indexer.apply(value), key);
+        }
+    }
+
+    private void unindex(String key, T previous) {
+        if (indexer != null) {
+            index.remove(indexer.apply(previous), key);
+        }
     }
 }
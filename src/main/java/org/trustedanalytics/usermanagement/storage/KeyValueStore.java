@@ -15,7 +15,12 @@
  */
 package org.trustedanalytics.usermanagement.storage;
 
+import java.time.Duration;
 import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 public interface KeyValueStore<T> {
     boolean hasKey(String key);
@@ -24,9 +29,73 @@ public interface KeyValueStore<T> {
 
     void remove(String key);
 
+    /**
+     * Atomically removes the entry and returns its value, or null when it was absent or expired.
+     */
+    T getAndRemove(String key);
+
     void put(String key, T value);
 
     boolean putIfAbsent(String key, T value);
 
+    /**
+     * Stores the value so that it is treated as absent once the ttl elapses. A null or non-positive
+     * ttl means no expiry, the same as put(key, value), which also clears a previously set ttl.
+     */
+    void put(String key, T value, Duration ttl);
+
+    /**
+     * Like putIfAbsent(key, value), but an entry whose ttl has elapsed counts as absent.
+     */
+    boolean putIfAbsent(String key, T value, Duration ttl);
+
+    /**
+     * Returns the values of the given keys that are present and not expired, keyed by their keys.
+     */
+    Map<String, T> getAll(Collection<String> keys);
+
+    /**
+     * Stores all the values with the same ttl, in as few round-trips as the store allows.
+     */
+    void putAll(Map<String, T> values, Duration ttl);
+
+    void removeAll(Collection<String> keys);
+
+    /**
+     * Atomically replaces the value with the result of the remapping function, which gets the current
+     * value or null when the key is absent or expired. A null result removes the entry. The function may
+     * be called more than once when the store retries after a concurrent update, so it must not have
+     * side effects other than on the value it is given. Returns the new value.
+     */
+    T compute(String key, UnaryOperator<T> remappingFunction, Duration ttl);
+
+    /**
+     * Physically removes entries whose ttl has elapsed. Returns the number of removed entries.
+     */
+    int purgeExpired();
+
     Collection<T> values();
+
+    /**
+     * Cheap liveness check of the underlying storage; fails or returns false when it is unreachable.
+     */
+    boolean ping();
+
+    /**
+     * Number of stored entries, including expired ones that were not purged yet.
+     */
+    long size();
+
+    /**
+     * Passes every value to the consumer, fetching at most about batchSize entries at a time, so the
+     * whole store is never held in memory. Like values(), it may include expired entries that were not
+     * purged yet.
+     */
+    void scan(int batchSize, Consumer<T> consumer);
+
+    /**
+     * Looks up a value by the secondary key the store was created with (e.g. email of a security code).
+     * Throws UnsupportedOperationException when the store has no secondary index.
+     */
+    Optional<T> findByIndex(String indexKey);
 }
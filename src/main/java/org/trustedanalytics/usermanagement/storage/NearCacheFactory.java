@@ -0,0 +1,60 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.storage;
+
+import com.google.common.io.BaseEncoding;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+
+/**
+ * Wraps Redis backed stores in {@link CachingKeyValueStore} when the near-cache is enabled. Keys are
+ * digested with the same hashing serializer that produces the Redis hash fields, so invalidation
+ * messages reveal nothing that is not already stored in Redis.
+ */
+public class NearCacheFactory {
+
+    private final boolean enabled;
+    private final long maximumSize;
+    private final Duration ttl;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final RedisSerializer<String> keyHashSerializer;
+
+    public NearCacheFactory(boolean enabled, long maximumSize, Duration ttl,
+                            RedisMessageListenerContainer listenerContainer,
+                            RedisSerializer<String> keyHashSerializer) {
+        this.enabled = enabled;
+        this.maximumSize = maximumSize;
+        this.ttl = ttl;
+        this.listenerContainer = listenerContainer;
+        this.keyHashSerializer = keyHashSerializer;
+    }
+
+    public <T> KeyValueStore<T> decorate(KeyValueStore<T> store, RedisOperations<String, ?> redisTemplate,
+                                         String storeKey) {
+        if (!enabled) {
+            return store;
+        }
+        RedisInvalidationChannel channel =
+                new RedisInvalidationChannel(redisTemplate, listenerContainer, storeKey + ":invalidations");
+        CachingKeyValueStore<T> cachingStore = new CachingKeyValueStore<>(store, maximumSize, ttl,
+                key -> BaseEncoding.base64().encode(keyHashSerializer.serialize(key)), channel::publish);
+        channel.subscribe(cachingStore::onInvalidation);
+        return cachingStore;
+    }
+}
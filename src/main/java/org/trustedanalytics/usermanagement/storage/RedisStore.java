@@ -15,48 +15,446 @@
  */
 package org.trustedanalytics.usermanagement.storage;
 
+import com.google.common.collect.Iterables;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 
+/**
+ * Keeps values in a single Redis hash. When an indexer is given, a secondary index is kept in two
+ * additional hashes ({@code <key>:index} maps index field to primary field, {@code <key>:indexed-keys}
+ * the other way around). Expiration times of entries stored with a ttl are kept in the
+ * {@code <key>:expiry} sorted set, scored by epoch millis. All of them are updated together with the
+ * primary hash by Lua scripts, so every mutation is atomic and costs a single round-trip.
+ *
+ * Redis cannot expire single hash fields, so expired entries are hidden from get, hasKey, findByIndex,
+ * values and scan and physically removed by purgeExpired(), which is meant to be called periodically.
+ */
 public class RedisStore<T> implements KeyValueStore<T> {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final int MAX_COMPUTE_ATTEMPTS = 16;
+
+    private static final byte[] NO_INDEX = new byte[0];
+
+    private static final byte[] NO_VALUE = new byte[0];
+
+    private static final String FUNCTIONS =
+            "local function unindex(field)\n" +
+            "    local indexField = redis.call('HGET', KEYS[3], field)\n" +
+            "    if indexField then\n" +
+            "        if redis.call('HGET', KEYS[2], indexField) == field then\n" +
+            "            redis.call('HDEL', KEYS[2], indexField)\n" +
+            "        end\n" +
+            "        redis.call('HDEL', KEYS[3], field)\n" +
+            "    end\n" +
+            "end\n" +
+            "local function delete(field)\n" +
+            "    unindex(field)\n" +
+            "    redis.call('ZREM', KEYS[4], field)\n" +
+            "    return redis.call('HDEL', KEYS[1], field)\n" +
+            "end\n" +
+            "local function expired(field, now)\n" +
+            "    local expiresAt = redis.call('ZSCORE', KEYS[4], field)\n" +
+            "    return expiresAt and tonumber(expiresAt) <= tonumber(now)\n" +
+            "end\n" +
+            "local function store(field, value, indexField, expiresAt)\n" +
+            "    unindex(field)\n" +
+            "    redis.call('HSET', KEYS[1], field, value)\n" +
+            "    if indexField ~= '' then\n" +
+            "        redis.call('HSET', KEYS[2], indexField, field)\n" +
+            "        redis.call('HSET', KEYS[3], field, indexField)\n" +
+            "    end\n" +
+            "    if tonumber(expiresAt) > 0 then\n" +
+            "        redis.call('ZADD', KEYS[4], expiresAt, field)\n" +
+            "    else\n" +
+            "        redis.call('ZREM', KEYS[4], field)\n" +
+            "    end\n" +
+            "end\n";
+
+    private static final RedisScript<byte[]> GET = script(FUNCTIONS +
+            "if expired(ARGV[1], ARGV[2]) then\n" +
+            "    return false\n" +
+            "end\n" +
+            "return redis.call('HGET', KEYS[1], ARGV[1])", byte[].class);
+
+    private static final RedisScript<Long> PUT = script(FUNCTIONS +
+            "store(ARGV[1], ARGV[2], ARGV[3], ARGV[4])\n" +
+            "return 1", Long.class);
+
+    private static final RedisScript<Long> PUT_ALL = script(FUNCTIONS +
+            "for i = 2, #ARGV, 3 do\n" +
+            "    store(ARGV[i], ARGV[i + 1], ARGV[i + 2], ARGV[1])\n" +
+            "end\n" +
+            "return 1", Long.class);
+
+    private static final RedisScript<Long> PUT_IF_ABSENT = script(FUNCTIONS +
+            "if expired(ARGV[1], ARGV[5]) then\n" +
+            "    delete(ARGV[1])\n" +
+            "end\n" +
+            "if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 1 then\n" +
+            "    return 0\n" +
+            "end\n" +
+            "store(ARGV[1], ARGV[2], ARGV[3], ARGV[4])\n" +
+            "return 1", Long.class);
+
+    private static final RedisScript<Long> COMPARE_AND_SET = script(FUNCTIONS +
+            "local current = redis.call('HGET', KEYS[1], ARGV[1])\n" +
+            "if current and expired(ARGV[1], ARGV[6]) then\n" +
+            "    delete(ARGV[1])\n" +
+            "    current = false\n" +
+            "end\n" +
+            "if (current or '') ~= ARGV[2] then\n" +
+            "    return 0\n" +
+            "end\n" +
+            "if ARGV[3] == '' then\n" +
+            "    delete(ARGV[1])\n" +
+            "else\n" +
+            "    store(ARGV[1], ARGV[3], ARGV[4], ARGV[5])\n" +
+            "end\n" +
+            "return 1", Long.class);
+
+    private static final RedisScript<byte[]> GET_AND_REMOVE = script(FUNCTIONS +
+            "local value = false\n" +
+            "if not expired(ARGV[1], ARGV[2]) then\n" +
+            "    value = redis.call('HGET', KEYS[1], ARGV[1])\n" +
+            "end\n" +
+            "delete(ARGV[1])\n" +
+            "return value", byte[].class);
+
+    private static final RedisScript<Long> REMOVE = script(FUNCTIONS +
+            "return delete(ARGV[1])", Long.class);
+
+    private static final RedisScript<Long> REMOVE_ALL = script(FUNCTIONS +
+            "local removed = 0\n" +
+            "for i = 1, #ARGV do\n" +
+            "    removed = removed + delete(ARGV[i])\n" +
+            "end\n" +
+            "return removed", Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> GET_ALL = script(FUNCTIONS +
+            "local values = {}\n" +
+            "for i = 2, #ARGV do\n" +
+            "    if expired(ARGV[i], ARGV[1]) then\n" +
+            "        values[i - 1] = false\n" +
+            "    else\n" +
+            "        values[i - 1] = redis.call('HGET', KEYS[1], ARGV[i])\n" +
+            "    end\n" +
+            "end\n" +
+            "return values", List.class);
+
+    private static final RedisScript<Long> PURGE_EXPIRED = script(FUNCTIONS +
+            "local fields = redis.call('ZRANGEBYSCORE', KEYS[4], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2])\n" +
+            "for _, field in ipairs(fields) do\n" +
+            "    delete(field)\n" +
+            "end\n" +
+            "return #fields", Long.class);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> VALUES = script(FUNCTIONS +
+            "local entries = redis.call('HGETALL', KEYS[1])\n" +
+            "local values = {}\n" +
+            "for i = 1, #entries, 2 do\n" +
+            "    if not expired(entries[i], ARGV[1]) then\n" +
+            "        values[#values + 1] = entries[i + 1]\n" +
+            "    end\n" +
+            "end\n" +
+            "return values", List.class);
+
+    private static final RedisScript<byte[]> FIND_BY_INDEX = script(FUNCTIONS +
+            "local field = redis.call('HGET', KEYS[2], ARGV[1])\n" +
+            "if not field or expired(field, ARGV[2]) then\n" +
+            "    return false\n" +
+            "end\n" +
+            "return redis.call('HGET', KEYS[1], field)", byte[].class);
+
     private final String storeKey;
 
+    private final List<String> scriptKeys;
+
+    private final RedisOperations<String, T> redisTemplate;
+
     private final HashOperations<String, String, T> hashOps;
 
+    private final Function<T, String> indexer;
+
     public RedisStore(RedisOperations<String, T> redisTemplate, String key) {
-        hashOps = redisTemplate.opsForHash();
-        storeKey = key;
+        this(redisTemplate, key, null);
+    }
+
+    public RedisStore(RedisOperations<String, T> redisTemplate, String key, Function<T, String> indexer) {
+        this.redisTemplate = redisTemplate;
+        this.hashOps = redisTemplate.opsForHash();
+        this.storeKey = key;
+        this.scriptKeys = Arrays.asList(key, key + ":index", key + ":indexed-keys", key + ":expiry");
+        this.indexer = indexer;
     }
 
     @Override
     public boolean hasKey(String key) {
-        return hashOps.hasKey(storeKey, key);
+        return get(key) != null;
     }
 
     @Override
     public T get(String key) {
-        return hashOps.get(storeKey, key);
+        return Optional.ofNullable(execute(GET, field(key), number(System.currentTimeMillis())))
+                .map(this::deserialize)
+                .orElse(null);
     }
 
     @Override
     public void remove(String key) {
-        hashOps.delete(storeKey, key);
+        execute(REMOVE, field(key));
+    }
+
+    @Override
+    public T getAndRemove(String key) {
+        return Optional.ofNullable(execute(GET_AND_REMOVE, field(key), number(System.currentTimeMillis())))
+                .map(this::deserialize)
+                .orElse(null);
+    }
+
+    @Override
+    public void put(String key, T value) {
+        put(key, value, null);
     }
 
     @Override
-    public void put(String key, T invitations) {
-        hashOps.put(storeKey, key, invitations);
+    public void put(String key, T value, Duration ttl) {
+        execute(PUT, field(key), value(value), indexField(value), number(expiresAt(ttl)));
     }
 
     @Override
     public boolean putIfAbsent(String key, T value) {
-        return hashOps.putIfAbsent(storeKey, key, value);
+        return putIfAbsent(key, value, null);
+    }
+
+    @Override
+    public boolean putIfAbsent(String key, T value, Duration ttl) {
+        return execute(PUT_IF_ABSENT, field(key), value(value), indexField(value), number(expiresAt(ttl)),
+                number(System.currentTimeMillis())) == 1L;
+    }
+
+    /**
+     * Fetches the values in batches of {@value #BATCH_SIZE} keys, one round-trip per batch.
+     */
+    @Override
+    public Map<String, T> getAll(Collection<String> keys) {
+        Map<String, T> found = new HashMap<>();
+        for (List<String> batch : Iterables.partition(keys, BATCH_SIZE)) {
+            List<byte[]> args = new ArrayList<>(batch.size() + 1);
+            args.add(number(System.currentTimeMillis()));
+            batch.forEach(key -> args.add(field(key)));
+            List<?> values = execute(GET_ALL, args.toArray(new byte[args.size()][]));
+            for (int i = 0; i < batch.size(); i++) {
+                if (values.get(i) != null) {
+                    found.put(batch.get(i), deserialize((byte[]) values.get(i)));
+                }
+            }
+        }
+        return found;
+    }
+
+    @Override
+    public void putAll(Map<String, T> values, Duration ttl) {
+        byte[] expiresAt = number(expiresAt(ttl));
+        for (List<Map.Entry<String, T>> batch : Iterables.partition(values.entrySet(), BATCH_SIZE)) {
+            List<byte[]> args = new ArrayList<>(batch.size() * 3 + 1);
+            args.add(expiresAt);
+            batch.forEach(entry -> {
+                args.add(field(entry.getKey()));
+                args.add(value(entry.getValue()));
+                args.add(indexField(entry.getValue()));
+            });
+            execute(PUT_ALL, args.toArray(new byte[args.size()][]));
+        }
+    }
+
+    @Override
+    public void removeAll(Collection<String> keys) {
+        for (List<String> batch : Iterables.partition(keys, BATCH_SIZE)) {
+            execute(REMOVE_ALL, batch.stream().map(this::field).toArray(byte[][]::new));
+        }
+    }
+
+    /**
+     * Reads the current value and writes the new one with a compare-and-set script that fails when the
+     * stored bytes changed in between, in which case the whole cycle is retried.
+     */
+    @Override
+    public T compute(String key, UnaryOperator<T> remappingFunction, Duration ttl) {
+        byte[] field = field(key);
+        for (int attempt = 0; attempt < MAX_COMPUTE_ATTEMPTS; attempt++) {
+            byte[] current = execute(GET, field, number(System.currentTimeMillis()));
+            T value = remappingFunction.apply(current == null ? null : deserialize(current));
+            byte[] expected = current == null ? NO_VALUE : current;
+            byte[] replacement = value == null ? NO_VALUE : value(value);
+            byte[] indexField = value == null ? NO_INDEX : indexField(value);
+            if (execute(COMPARE_AND_SET, field, expected, replacement, indexField, number(expiresAt(ttl)),
+                    number(System.currentTimeMillis())) == 1L) {
+                return value;
+            }
+        }
+        throw new ConcurrentModificationException("Too many concurrent updates of " + key + " in " + storeKey);
+    }
+
+    @Override
+    public int purgeExpired() {
+        byte[] now = number(System.currentTimeMillis());
+        int purged = 0;
+        long removed;
+        do {
+            removed = execute(PURGE_EXPIRED, now, number(BATCH_SIZE));
+            purged += removed;
+        } while (removed == BATCH_SIZE);
+        return purged;
     }
 
     @Override
     public Collection<T> values() {
-        return hashOps.values(storeKey);
+        List<?> values = execute(VALUES, number(System.currentTimeMillis()));
+        List<T> live = new ArrayList<>(values.size());
+        values.forEach(value -> live.add(deserialize((byte[]) value)));
+        return Collections.unmodifiableList(live);
+    }
+
+    @Override
+    public boolean ping() {
+        return "PONG".equalsIgnoreCase(redisTemplate.execute((RedisCallback<String>) RedisConnection::ping));
+    }
+
+    @Override
+    public long size() {
+        return hashOps.size(storeKey);
+    }
+
+    /**
+     * Iterates the hash with HSCAN on a single connection. Fields are hashed, so only values are
+     * deserialized. Fields that expired before the scan started are skipped.
+     */
+    @Override
+    public void scan(int batchSize, Consumer<T> consumer) {
+        ScanOptions options = ScanOptions.scanOptions().count(batchSize).build();
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            Set<ByteBuffer> expired = connection.zRangeByScore(rawKey(scriptKeys.get(3)),
+                    Double.NEGATIVE_INFINITY, System.currentTimeMillis()).stream()
+                    .map(ByteBuffer::wrap)
+                    .collect(Collectors.toSet());
+            try (Cursor<Map.Entry<byte[], byte[]>> cursor = connection.hScan(rawKey(storeKey), options)) {
+                cursor.forEachRemaining(entry -> {
+                    if (!expired.contains(ByteBuffer.wrap(entry.getKey()))) {
+                        consumer.accept(deserialize(entry.getValue()));
+                    }
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public Optional<T> findByIndex(String indexKey) {
+        if (indexer == null) {
+            throw new UnsupportedOperationException("Store " + storeKey + " has no secondary index");
+        }
+        return Optional.ofNullable(execute(FIND_BY_INDEX, field(indexKey), number(System.currentTimeMillis())))
+                .map(this::deserialize);
+    }
+
+    /**
+     * Builds the secondary index for entries written before the store was indexed. Does nothing when
+     * the index already exists or the store is empty.
+     */
+    public void buildMissingIndex() {
+        if (indexer == null) {
+            return;
+        }
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            byte[] rawIndexKey = rawKey(scriptKeys.get(1));
+            if (connection.hLen(rawIndexKey) == 0) {
+                connection.hGetAll(rawKey(storeKey)).forEach((field, value) ->
+                        index(connection, field, field(indexer.apply(deserialize(value)))));
+            }
+            return null;
+        });
+    }
+
+    private void index(RedisConnection connection, byte[] field, byte[] indexField) {
+        connection.hSet(rawKey(scriptKeys.get(1)), indexField, field);
+        connection.hSet(rawKey(scriptKeys.get(2)), field, indexField);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] rawKey(String key) {
+        return ((RedisSerializer<String>) redisTemplate.getKeySerializer()).serialize(key);
+    }
+
+    private <R> R execute(RedisScript<R> script, byte[]... args) {
+        // null args serializer makes the script executor pass already serialized arguments as they are
+        return redisTemplate.execute(script, (RedisSerializer<?>) null, (RedisSerializer<R>) null, scriptKeys,
+                (Object[]) args);
+    }
+
+    private byte[] indexField(T value) {
+        return indexer == null ? NO_INDEX : field(indexer.apply(value));
+    }
+
+    private static long expiresAt(Duration ttl) {
+        return ttl == null || ttl.isZero() || ttl.isNegative() ? 0 : System.currentTimeMillis() + ttl.toMillis();
+    }
+
+    private static byte[] number(long value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] field(String key) {
+        return ((RedisSerializer<String>) redisTemplate.getHashKeySerializer()).serialize(key);
+    }
+
+    @SuppressWarnings("unchecked")
+    private byte[] value(T value) {
+        return ((RedisSerializer<T>) redisTemplate.getHashValueSerializer()).serialize(value);
+    }
+
+    @SuppressWarnings("unchecked")
+    private T deserialize(byte[] value) {
+        return ((RedisSerializer<T>) redisTemplate.getHashValueSerializer()).deserialize(value);
+    }
+
+    private static <R> RedisScript<R> script(String text, Class<R> resultType) {
+        DefaultRedisScript<R> script = new DefaultRedisScript<>();
+        script.setScriptText(text);
+        script.setResultType(resultType);
+        return script;
     }
 }
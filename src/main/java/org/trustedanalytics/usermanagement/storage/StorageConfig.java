@@ -23,6 +23,7 @@ import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
 import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.JacksonJsonRedisSerializer;
 import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
@@ -34,6 +35,12 @@ import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCode
 import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCodeService;
 import org.trustedanalytics.usermanagement.invitations.service.AccessInvitations;
 import org.trustedanalytics.usermanagement.invitations.service.AccessInvitationsService;
+import org.trustedanalytics.usermanagement.invitations.service.OutboxMessage;
+import org.trustedanalytics.usermanagement.metrics.DependencyMetrics;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.List;
 
 public class StorageConfig {
 
@@ -63,34 +70,63 @@ public class StorageConfig {
     @Configuration
     public static class InMemorySecurityCodesStorageConfig {
 
+        @Value("${storage.in_memory.capacity:0}")
+        private int capacity;
+
+        @Value("${storage.expiry_days:14}")
+        private int expiryDays;
+
         @Bean
         KeyValueStore<SecurityCode> inMemorySecurityCodeStore() {
-            return new InMemoryStore<>();
+            return new InMemoryStore<>(SecurityCode::getEmail, capacity);
         }
 
         @Bean
         SecurityCodeService inMemorySecurityCodeService(KeyValueStore<SecurityCode> inMemorySecurityCodeStore) {
-            return new SecurityCodeService(inMemorySecurityCodeStore);
+            return new SecurityCodeService(inMemorySecurityCodeStore, Duration.ofDays(expiryDays));
         }
     }
 
     @Profile("in-memory")
     @Configuration
     public static class InMemoryInvitationsStorageConfig {
+
+        @Value("${storage.in_memory.capacity:0}")
+        private int capacity;
+
+        @Value("${storage.expiry_days:14}")
+        private int expiryDays;
+
         @Bean
         KeyValueStore<AccessInvitations> inMemoryAccessInvitationsStore() {
-            return new InMemoryStore<>();
+            return new InMemoryStore<>(null, capacity);
         }
 
         @Bean
         AccessInvitationsService inMemoryAccessInvitationsService(KeyValueStore<AccessInvitations> inMemoryAccessInvitationsStore) {
-            return new AccessInvitationsService(inMemoryAccessInvitationsStore);
+            return new AccessInvitationsService(inMemoryAccessInvitationsStore, Duration.ofDays(expiryDays));
         }
     }
 
+    @Profile("in-memory")
+    @Configuration
+    public static class InMemoryEmailOutboxStorageConfig {
 
+        @Value("${storage.in_memory.capacity:0}")
+        private int capacity;
 
-    @Profile("redis")
+        @Bean
+        KeyValueStore<OutboxMessage> emailOutboxStore() {
+            return new InMemoryStore<>(null, capacity);
+        }
+
+        @Bean
+        KeyValueStore<OutboxMessage> emailDeadLetterStore() {
+            return new InMemoryStore<>(null, capacity);
+        }
+    }
+
+    @Profile({"redis", "file"})
     @Configuration
     public static class RedisSecurityConfig {
 
@@ -116,18 +152,53 @@ public class StorageConfig {
         }
     }
 
+    @Profile("redis")
+    @Configuration
+    public static class RedisNearCacheConfig {
+
+        @Value("${storage.near_cache.enabled:false}")
+        private boolean enabled;
+
+        @Value("${storage.near_cache.max_size:10000}")
+        private long maxSize;
+
+        @Value("${storage.near_cache.ttl_seconds:60}")
+        private long ttlSeconds;
+
+        @Bean
+        RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory) {
+            RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+            container.setConnectionFactory(redisConnectionFactory);
+            return container;
+        }
+
+        @Bean
+        NearCacheFactory nearCacheFactory(RedisMessageListenerContainer redisMessageListenerContainer,
+                                          HashedStringRedisSerializer hashedStringRedisSerializer) {
+            return new NearCacheFactory(enabled, maxSize, Duration.ofSeconds(ttlSeconds),
+                    redisMessageListenerContainer, hashedStringRedisSerializer);
+        }
+    }
+
     @Profile("redis")
     @Configuration
     public static class RedisSecurityCodesStorageConfig {
 
+        @Value("${storage.expiry_days:14}")
+        private int expiryDays;
+
         @Bean
-        KeyValueStore<SecurityCode> redisSecurityCodeStore( RedisOperations<String, SecurityCode> redisTemplate) {
-            return new RedisStore<>(redisTemplate, "security-codes");
+        KeyValueStore<SecurityCode> redisSecurityCodeStore( RedisOperations<String, SecurityCode> redisTemplate,
+                                                            NearCacheFactory nearCacheFactory,
+                                                            DependencyMetrics dependencyMetrics) {
+            RedisStore<SecurityCode> store = new RedisStore<>(redisTemplate, "security-codes", SecurityCode::getEmail);
+            store.buildMissingIndex();
+            return nearCacheFactory.decorate(CommonConfiguration.instrument(dependencyMetrics, store), redisTemplate, "security-codes");
         }
 
         @Bean
         protected SecurityCodeService redisSecurityCodeService(KeyValueStore<SecurityCode> redisSecurityCodeStore) {
-            return new SecurityCodeService(redisSecurityCodeStore);
+            return new SecurityCodeService(redisSecurityCodeStore, Duration.ofDays(expiryDays));
         }
 
         @Bean
@@ -148,15 +219,23 @@ public class StorageConfig {
     @Profile("redis")
     @Configuration
     public static class RedisInvitationStorageConfig {
+
+        @Value("${storage.expiry_days:14}")
+        private int expiryDays;
+
         @Bean
         public KeyValueStore<AccessInvitations> redisAccessInvitationsStore(
-                RedisOperations<String, AccessInvitations> redisAccessInvitationsTemplate) {
-            return new RedisStore<>(redisAccessInvitationsTemplate, "access-invitations");
+                RedisOperations<String, AccessInvitations> redisAccessInvitationsTemplate,
+                NearCacheFactory nearCacheFactory,
+                DependencyMetrics dependencyMetrics) {
+            KeyValueStore<AccessInvitations> store = CommonConfiguration.instrument(dependencyMetrics,
+                    new RedisStore<>(redisAccessInvitationsTemplate, "access-invitations"));
+            return nearCacheFactory.decorate(store, redisAccessInvitationsTemplate, "access-invitations");
         }
 
         @Bean
         AccessInvitationsService redisAccessInvitationsService(KeyValueStore<AccessInvitations> redisAccessInvitationsStore) {
-            return new AccessInvitationsService(redisAccessInvitationsStore);
+            return new AccessInvitationsService(redisAccessInvitationsStore, Duration.ofDays(expiryDays));
         }
 
         @Bean
@@ -168,6 +247,95 @@ public class StorageConfig {
         }
     }
 
+    @Profile("redis")
+    @Configuration
+    public static class RedisEmailOutboxStorageConfig {
+
+        @Bean
+        KeyValueStore<OutboxMessage> emailOutboxStore(RedisOperations<String, OutboxMessage> redisOutboxTemplate,
+                                                      DependencyMetrics dependencyMetrics) {
+            return CommonConfiguration.instrument(dependencyMetrics,
+                    new RedisStore<>(redisOutboxTemplate, "email-outbox"));
+        }
+
+        @Bean
+        KeyValueStore<OutboxMessage> emailDeadLetterStore(RedisOperations<String, OutboxMessage> redisOutboxTemplate,
+                                                          DependencyMetrics dependencyMetrics) {
+            return CommonConfiguration.instrument(dependencyMetrics,
+                    new RedisStore<>(redisOutboxTemplate, "email-dead-letters"));
+        }
+
+        @Bean
+        public RedisOperations<String, OutboxMessage> redisOutboxTemplate(RedisConnectionFactory redisConnectionFactory,
+                                                                          HashedStringRedisSerializer hashedStringRedisSerializer,
+                                                                          EncryptionService encryptionService) {
+            return CommonConfiguration.redisTemplate(redisConnectionFactory,
+                    hashedStringRedisSerializer,
+                    new SecureJacksonJsonRedisSerializer<OutboxMessage>(OutboxMessage.class, encryptionService));
+        }
+    }
+
+    @Profile("file")
+    @Configuration
+    public static class FileStorageConfig {
+
+        @Value("${storage.file.directory}")
+        private String directory;
+
+        @Value("${storage.expiry_days:14}")
+        private int expiryDays;
+
+        @Bean
+        KeyValueStore<SecurityCode> fileSecurityCodeStore(HashedStringRedisSerializer hashedStringRedisSerializer,
+                                                          EncryptionService encryptionService) {
+            return new FileStore<>(Paths.get(directory, "security-codes.log"), hashedStringRedisSerializer,
+                    new SecureJacksonJsonRedisSerializer<SecurityCode>(SecurityCode.class, encryptionService),
+                    SecurityCode::getEmail);
+        }
+
+        @Bean
+        SecurityCodeService fileSecurityCodeService(KeyValueStore<SecurityCode> fileSecurityCodeStore) {
+            return new SecurityCodeService(fileSecurityCodeStore, Duration.ofDays(expiryDays));
+        }
+
+        @Bean
+        KeyValueStore<AccessInvitations> fileAccessInvitationsStore(HashedStringRedisSerializer hashedStringRedisSerializer) {
+            return new FileStore<>(Paths.get(directory, "access-invitations.log"), hashedStringRedisSerializer,
+                    new JacksonJsonRedisSerializer<AccessInvitations>(AccessInvitations.class), null);
+        }
+
+        @Bean
+        KeyValueStore<OutboxMessage> emailOutboxStore(HashedStringRedisSerializer hashedStringRedisSerializer,
+                                                      EncryptionService encryptionService) {
+            return new FileStore<>(Paths.get(directory, "email-outbox.log"), hashedStringRedisSerializer,
+                    new SecureJacksonJsonRedisSerializer<OutboxMessage>(OutboxMessage.class, encryptionService), null);
+        }
+
+        @Bean
+        KeyValueStore<OutboxMessage> emailDeadLetterStore(HashedStringRedisSerializer hashedStringRedisSerializer,
+                                                          EncryptionService encryptionService) {
+            return new FileStore<>(Paths.get(directory, "email-dead-letters.log"), hashedStringRedisSerializer,
+                    new SecureJacksonJsonRedisSerializer<OutboxMessage>(OutboxMessage.class, encryptionService), null);
+        }
+
+        @Bean
+        AccessInvitationsService fileAccessInvitationsService(KeyValueStore<AccessInvitations> fileAccessInvitationsStore) {
+            return new AccessInvitationsService(fileAccessInvitationsStore, Duration.ofDays(expiryDays));
+        }
+    }
+
+    @Configuration
+    public static class ExpiryConfig {
+
+        @Value("${storage.reaper.delay:60000}")
+        private int reaperDelay;
+
+        @Bean
+        ExpiredEntriesReaper expiredEntriesReaper(List<KeyValueStore<?>> stores) {
+            return new ExpiredEntriesReaper(reaperDelay, stores);
+        }
+    }
+
     private static class CommonConfiguration {
         private CommonConfiguration() {
         }
@@ -186,5 +354,10 @@ public class StorageConfig {
 
             return template;
         }
+
+        @SuppressWarnings("unchecked")
+        private static <T> KeyValueStore<T> instrument(DependencyMetrics dependencyMetrics, KeyValueStore<T> store) {
+            return dependencyMetrics.instrument(KeyValueStore.class, store, "redis");
+        }
     }
 }
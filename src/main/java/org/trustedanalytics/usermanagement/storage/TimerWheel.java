@@ -0,0 +1,71 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hashed timer wheel of keys. Scheduling is O(1); advancing hands out only the keys from the buckets
+ * that passed since the previous call. The wheel does not remember deadlines: callers check the
+ * current deadline of every key they get back and schedule it again if it is not due yet (which
+ * happens for deadlines more than one turn ahead, or keys whose deadline was extended).
+ */
+class TimerWheel {
+
+    private final long tickMillis;
+    private final List<Set<String>> buckets;
+    private volatile long nextTick;
+
+    TimerWheel(int size, long tickMillis, long now) {
+        this.tickMillis = tickMillis;
+        this.buckets = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            buckets.add(ConcurrentHashMap.newKeySet());
+        }
+        this.nextTick = now / tickMillis;
+    }
+
+    void schedule(String key, long deadline) {
+        buckets.get(bucket(Math.max(deadline / tickMillis, nextTick))).add(key);
+    }
+
+    /**
+     * Collects keys from every tick that has fully elapsed by {@code now}.
+     */
+    synchronized Collection<String> advance(long now) {
+        long currentTick = now / tickMillis;
+        long fromTick = Math.max(nextTick, currentTick - buckets.size());
+        List<String> candidates = new ArrayList<>();
+        for (long tick = fromTick; tick < currentTick; tick++) {
+            Iterator<String> keys = buckets.get(bucket(tick)).iterator();
+            while (keys.hasNext()) {
+                candidates.add(keys.next());
+                keys.remove();
+            }
+        }
+        nextTick = Math.max(nextTick, currentTick);
+        return candidates;
+    }
+
+    private int bucket(long tick) {
+        return (int) (tick % buckets.size());
+    }
+}
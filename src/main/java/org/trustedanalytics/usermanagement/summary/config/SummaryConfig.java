@@ -0,0 +1,36 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.summary.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.trustedanalytics.usermanagement.orgs.service.OrganizationsStorage;
+import org.trustedanalytics.usermanagement.summary.service.SummarySnapshot;
+import org.trustedanalytics.usermanagement.users.service.UsersService;
+
+@Configuration
+public class SummaryConfig {
+
+    @Value("${summary.refresh_delay:60000}")
+    private int refreshDelay;
+
+    @Bean
+    public SummarySnapshot summarySnapshot(UsersService privilegedUsersService,
+                                           OrganizationsStorage organizationsStorage) {
+        return new SummarySnapshot(refreshDelay, privilegedUsersService, organizationsStorage);
+    }
+}
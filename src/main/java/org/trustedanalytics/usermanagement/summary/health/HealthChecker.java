@@ -74,7 +74,10 @@ public class HealthChecker {
     private void checkDataBase(Health.Builder healthBuilder) {
         // check if RedisDB/in-memory is responding
         try {
-            securityCodeService.getKeys();
+            if (!securityCodeService.isStorageAvailable()) {
+                LOGGER.error("Database for storing invitations did not respond to ping");
+                healthBuilder.down().withDetail("DataBase", "Error connecting to database for storing invitations");
+            }
         } catch (Exception e) {
             LOGGER.error("Error connecting to database for storing invitations", e);
             healthBuilder.down().withDetail("DataBase", "Error connecting to database for storing invitations");
@@ -16,24 +16,34 @@
 package org.trustedanalytics.usermanagement.summary.rest;
 
 import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.trustedanalytics.usermanagement.security.service.UserDetailsFinder;
 import org.trustedanalytics.usermanagement.summary.health.HealthChecker;
 import org.trustedanalytics.usermanagement.summary.model.OrganizationSummary;
 import org.trustedanalytics.usermanagement.summary.model.PlatformSummary;
 import org.trustedanalytics.usermanagement.summary.service.SummaryService;
+import org.trustedanalytics.usermanagement.summary.service.SummarySnapshot;
+import org.trustedanalytics.usermanagement.users.model.UserRole;
+
+import java.util.Arrays;
+import java.util.Optional;
 
 @RestController
 @ControllerAdvice
@@ -41,13 +51,21 @@ public class SummaryController {
 
     private final SummaryService service;
 
+    private final SummarySnapshot snapshot;
+
     private final HealthChecker healthChecker;
 
+    private final UserDetailsFinder detailsFinder;
+
     @Autowired
     public SummaryController(SummaryService service,
-                             HealthChecker healthChecker) {
+                             SummarySnapshot snapshot,
+                             HealthChecker healthChecker,
+                             UserDetailsFinder detailsFinder) {
         this.service = service;
+        this.snapshot = snapshot;
         this.healthChecker = healthChecker;
+        this.detailsFinder = detailsFinder;
     }
 
     @ApiOperation(
@@ -69,12 +87,42 @@ public class SummaryController {
     }
 
     @RequestMapping(value = "/rest/organizations/summary", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-    public PlatformSummary getOrganizationsAndUsers() {
-        return service.getPlatformSummary();
+    public ResponseEntity<PlatformSummary> getOrganizationsAndUsers(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @ApiParam(hidden = true) Authentication auth) {
+        if (isAdmin(auth)) {
+            SummarySnapshot.Versioned<PlatformSummary> summary = snapshot.getPlatformSummary();
+            return conditional(summary.getValue(), summary.getEtag(), ifNoneMatch);
+        }
+        PlatformSummary summary = service.getPlatformSummary();
+        return conditional(summary, SummarySnapshot.etag(summary), ifNoneMatch);
     }
 
     @RequestMapping(value = "/rest/organizations/{orgGuid}/summary", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-    public OrganizationSummary getOrganizationUsers(@PathVariable("orgGuid") String orgGuid) {
-        return service.getOrganizationSummary(orgGuid);
+    public ResponseEntity<OrganizationSummary> getOrganizationUsers(
+            @PathVariable("orgGuid") String orgGuid,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @ApiParam(hidden = true) Authentication auth) {
+        if (isAdmin(auth)) {
+            Optional<SummarySnapshot.Versioned<OrganizationSummary>> summary = snapshot.getOrganizationSummary(orgGuid);
+            if (summary.isPresent()) {
+                return conditional(summary.get().getValue(), summary.get().getEtag(), ifNoneMatch);
+            }
+        }
+        OrganizationSummary summary = service.getOrganizationSummary(orgGuid);
+        return conditional(summary, SummarySnapshot.etag(summary), ifNoneMatch);
+    }
+
+    private boolean isAdmin(Authentication auth) {
+        return auth != null && UserRole.ADMIN.equals(detailsFinder.findUserRole(auth));
+    }
+
+    private static <T> ResponseEntity<T> conditional(T body, String etag, String ifNoneMatch) {
+        if (ifNoneMatch != null && Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .anyMatch(tag -> tag.equals(etag) || tag.equals("*") || tag.equals("W/" + etag))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        return ResponseEntity.ok().eTag(etag).body(body);
     }
 }
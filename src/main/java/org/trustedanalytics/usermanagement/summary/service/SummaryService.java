@@ -22,9 +22,11 @@ import org.trustedanalytics.usermanagement.orgs.model.Org;
 import org.trustedanalytics.usermanagement.orgs.service.OrganizationsStorage;
 import org.trustedanalytics.usermanagement.summary.model.OrganizationSummary;
 import org.trustedanalytics.usermanagement.summary.model.PlatformSummary;
+import org.trustedanalytics.usermanagement.users.model.User;
 import org.trustedanalytics.usermanagement.users.service.UsersService;
 
 import java.util.Collection;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -40,25 +42,28 @@ public class SummaryService {
     }
 
     public OrganizationSummary getOrganizationSummary(String orgGuid) {
-        final OrganizationSummary summary = new OrganizationSummary();
         final Org org = organizationsStorage.getOrganization(orgGuid).orElseThrow(() ->
                 new EntityNotFoundException(String.format("Organization with ID %s not found", orgGuid)));
 
-        summary.setName(org.getName());
-        summary.setGuid(org.getGuid());
-        summary.setUsers(usersService.getOrgUsers(orgGuid));
-
-        return summary;
+        return summarize(org, usersService.getOrgUsers(orgGuid));
     }
 
     public PlatformSummary getPlatformSummary() {
+        final Collection<Org> orgs = organizationsStorage.getOrganizations();
+        final Map<String, Collection<User>> users = usersService.getOrgsUsers(
+                orgs.stream().map(Org::getGuid).collect(Collectors.toList()));
         final Collection<OrganizationSummary> summaries =
-                organizationsStorage
-                        .getOrganizations()
-                        .stream()
-                        .map(Org::getGuid)
-                        .map(this::getOrganizationSummary)
+                orgs.stream()
+                        .map(org -> summarize(org, users.get(org.getGuid())))
                         .collect(Collectors.toList());
         return new PlatformSummary(summaries);
     }
+
+    private OrganizationSummary summarize(Org org, Collection<User> users) {
+        final OrganizationSummary summary = new OrganizationSummary();
+        summary.setName(org.getName());
+        summary.setGuid(org.getGuid());
+        summary.setUsers(users);
+        return summary;
+    }
 }
@@ -0,0 +1,259 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.summary.service;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.trustedanalytics.usermanagement.orgs.model.Org;
+import org.trustedanalytics.usermanagement.orgs.service.OrganizationsStorage;
+import org.trustedanalytics.usermanagement.summary.model.OrganizationSummary;
+import org.trustedanalytics.usermanagement.summary.model.PlatformSummary;
+import org.trustedanalytics.usermanagement.users.model.User;
+import org.trustedanalytics.usermanagement.users.service.UserChangedEvent;
+import org.trustedanalytics.usermanagement.users.service.UsersService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+/**
+ * Platform summary kept in memory for privileged readers. It is rebuilt on a schedule, patched in place
+ * when known users are deleted or change roles, and dropped when users are created or organization membership
+ * changes, so that the next read rebuilds it. Users created in UAA by other means appear after the next rebuild.
+ */
+public class SummarySnapshot implements ApplicationListener<UserChangedEvent> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SummarySnapshot.class);
+
+    private static final Comparator<User> USER_ORDER =
+            Comparator.comparing(User::getGuid, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+                    .thenComparing(User::getUsername, Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+
+    private final int refreshDelay;
+    private final UsersService privilegedUsersService;
+    private final OrganizationsStorage organizationsStorage;
+
+    private final Object refreshLock = new Object();
+    private final AtomicReference<State> state = new AtomicReference<>(new State(0, null));
+    private ThreadPoolTaskScheduler scheduler;
+
+    public SummarySnapshot(int refreshDelay, UsersService privilegedUsersService,
+                           OrganizationsStorage organizationsStorage) {
+        this.refreshDelay = refreshDelay;
+        this.privilegedUsersService = privilegedUsersService;
+        this.organizationsStorage = organizationsStorage;
+    }
+
+    @PostConstruct
+    public void init() {
+        scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setAwaitTerminationSeconds(1);
+        scheduler.afterPropertiesSet();
+        scheduler.scheduleWithFixedDelay(this::refreshQuietly, refreshDelay);
+    }
+
+    @PreDestroy
+    public void finish() {
+        scheduler.shutdown();
+    }
+
+    public Versioned<PlatformSummary> getPlatformSummary() {
+        Snapshot current = current();
+        return new Versioned<>(current.platform, current.etag);
+    }
+
+    public Optional<Versioned<OrganizationSummary>> getOrganizationSummary(String orgGuid) {
+        return Optional.ofNullable(current().organizations.get(orgGuid));
+    }
+
+    public void refresh() {
+        synchronized (refreshLock) {
+            refreshLocked();
+        }
+    }
+
+    /**
+     * Applies the change without waiting for a running refresh; the refresh then discards what it loaded
+     * instead of replacing the patched or dropped snapshot.
+     */
+    @Override
+    public void onApplicationEvent(UserChangedEvent event) {
+        state.updateAndGet(current -> new State(current.generation + 1,
+                current.snapshot == null ? null : apply(current.snapshot, event)));
+    }
+
+    private static Snapshot apply(Snapshot current, UserChangedEvent event) {
+        if (event.getType() == UserChangedEvent.Type.CREATED
+                || event.getType() == UserChangedEvent.Type.MEMBERSHIP_CHANGED) {
+            // membership is not known to the snapshot, let the next read rebuild the summary
+            return null;
+        }
+        boolean known = current.platform.getOrganizations().stream()
+                .flatMap(org -> org.getUsers().stream())
+                .anyMatch(user -> event.getUserGuid().equals(user.getGuid()));
+        if (!known) {
+            // a user registered since the last refresh, let the next read rebuild the summary
+            return event.isDeleted() ? current : null;
+        }
+        List<OrganizationSummary> patched = current.platform.getOrganizations().stream()
+                .map(org -> summarize(org.getGuid(), org.getName(), patch(org.getUsers(), event)))
+                .collect(Collectors.toList());
+        return new Snapshot(patched);
+    }
+
+    private Snapshot current() {
+        Snapshot current = state.get().snapshot;
+        if (current == null) {
+            synchronized (refreshLock) {
+                current = state.get().snapshot;
+                if (current == null) {
+                    current = refreshLocked();
+                }
+            }
+        }
+        return current;
+    }
+
+    private Snapshot refreshLocked() {
+        long generation = state.get().generation;
+        Collection<Org> orgs = organizationsStorage.getOrganizations();
+        Map<String, Collection<User>> users = privilegedUsersService.getOrgsUsers(
+                orgs.stream().map(Org::getGuid).collect(Collectors.toList()));
+        List<OrganizationSummary> summaries = orgs.stream()
+                .map(org -> summarize(org.getGuid(), org.getName(), users.get(org.getGuid())))
+                .collect(Collectors.toList());
+        Snapshot loaded = new Snapshot(summaries);
+        state.updateAndGet(current -> current.generation == generation ? new State(generation, loaded) : current);
+        return loaded;
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            LOGGER.warn("Unable to refresh platform summary, serving the previous one", e);
+        }
+    }
+
+    private static Collection<User> patch(Collection<User> users, UserChangedEvent event) {
+        return users.stream()
+                .filter(user -> !(event.isDeleted() && event.getUserGuid().equals(user.getGuid())))
+                .map(user -> event.getUserGuid().equals(user.getGuid())
+                        ? new User(user.getGuid(), user.getUsername(), event.getRole())
+                        : user)
+                .collect(Collectors.toList());
+    }
+
+    private static OrganizationSummary summarize(String guid, String name, Collection<User> users) {
+        OrganizationSummary summary = new OrganizationSummary();
+        summary.setGuid(guid);
+        summary.setName(name);
+        summary.setUsers(users == null ? Collections.emptyList() : sorted(users));
+        return summary;
+    }
+
+    /**
+     * Strong ETag derived from the content, so that replicas holding the same summary agree on it.
+     */
+    public static String etag(PlatformSummary summary) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        summary.getOrganizations().forEach(org -> putOrganization(hasher, org));
+        return quote(hasher);
+    }
+
+    public static String etag(OrganizationSummary summary) {
+        Hasher hasher = Hashing.sha256().newHasher();
+        putOrganization(hasher, summary);
+        return quote(hasher);
+    }
+
+    private static void putOrganization(Hasher hasher, OrganizationSummary org) {
+        putField(hasher, org.getGuid());
+        putField(hasher, org.getName());
+        sorted(Optional.ofNullable(org.getUsers()).orElse(Collections.emptyList())).forEach(user -> {
+            putField(hasher, user.getGuid());
+            putField(hasher, user.getUsername());
+            putField(hasher, user.getRole() == null ? null : user.getRole().name());
+        });
+        hasher.putByte((byte) 0);
+    }
+
+    private static List<User> sorted(Collection<User> users) {
+        return users.stream().sorted(USER_ORDER).collect(Collectors.toList());
+    }
+
+    private static void putField(Hasher hasher, String value) {
+        String field = String.valueOf(value);
+        hasher.putInt(field.length()).putString(field, StandardCharsets.UTF_8);
+    }
+
+    private static String quote(Hasher hasher) {
+        return "\"" + hasher.hash().toString().substring(0, 32) + "\"";
+    }
+
+    public static class Versioned<T> {
+        private final T value;
+        private final String etag;
+
+        Versioned(T value, String etag) {
+            this.value = value;
+            this.etag = etag;
+        }
+
+        public T getValue() {
+            return value;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    private static class State {
+        private final long generation;
+        private final Snapshot snapshot;
+
+        State(long generation, Snapshot snapshot) {
+            this.generation = generation;
+            this.snapshot = snapshot;
+        }
+    }
+
+    private static class Snapshot {
+        private final PlatformSummary platform;
+        private final String etag;
+        private final Map<String, Versioned<OrganizationSummary>> organizations = new LinkedHashMap<>();
+
+        Snapshot(List<OrganizationSummary> summaries) {
+            this.platform = new PlatformSummary(Collections.unmodifiableList(summaries));
+            this.etag = etag(platform);
+            summaries.forEach(org -> organizations.put(org.getGuid(), new Versioned<>(org, etag(org))));
+        }
+    }
+}
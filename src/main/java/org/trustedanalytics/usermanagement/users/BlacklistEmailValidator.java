@@ -18,42 +18,43 @@ package org.trustedanalytics.usermanagement.users;
 
 import org.trustedanalytics.usermanagement.invitations.WrongEmailAddressException;
 
-import java.util.List;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
+/**
+ * Thread-safe, the pattern is compiled once and the blacklist is a hashed set. A blocked domain also blocks
+ * its subdomains, e.g. example.com blocks mail.example.com.
+ */
 public class BlacklistEmailValidator implements EmailValidator {
-    private static final String EMAIL_PATTERN = "(?:[a-z0-9!#$%&'*+/=?^_`{|}~-]+(?:\\.[a-z0-9!#$%&'*+/=?^_`{|}~-]+)" +
+    private static final Pattern EMAIL_PATTERN = Pattern.compile(
+            "(?:[a-z0-9!#$%&'*+/=?^_`{|}~-]+(?:\\.[a-z0-9!#$%&'*+/=?^_`{|}~-]+)" +
             "*|\"(?:[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21\\x23-\\x5b\\x5d-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-" +
             "\\x7f])*\")@(?:(?:[a-z0-9](?:[a-z0-9-]*[a-z0-9])?\\.)+[a-z0-9](?:[a-z0-9-]*[a-z0-9])?|\\[(?:(?:25[0-5]" +
             "|2[0-4][0-9]|[01]?[0-9][0-9]?)\\.){3}(?:25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?|[a-z0-9-]*[a-z0-9]:(?:" +
-            "[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21-\\x5a\\x53-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-\\x7f])+)\\])";
+            "[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21-\\x5a\\x53-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-\\x7f])+)\\])");
 
     private static final int MAX_NUMBER_OF_CHARACTERS_IN_DOMAIN_PART = 252;
     private static final int MAX_NUMBER_OF_CHARACTERS_IN_LOCAL_PART = 64;
 
-    private final List<String> forbiddenDomains;
+    private final Set<String> forbiddenDomains;
 
-    public BlacklistEmailValidator(List<String> forbiddenDomains) {
-        this.forbiddenDomains = forbiddenDomains;
+    public BlacklistEmailValidator(Collection<String> forbiddenDomains) {
+        this.forbiddenDomains = forbiddenDomains.stream()
+                .map(domain -> domain.trim().toLowerCase(Locale.ROOT))
+                .filter(domain -> !domain.isEmpty())
+                .collect(Collectors.toSet());
     }
 
-    private void validateDomain(String email) {
-        if(forbiddenDomains.contains(getDomainPart(email))){
-            throw new WrongEmailAddressException("That domain is blocked");
-        }
-        if(getDomainPart(email).length() > MAX_NUMBER_OF_CHARACTERS_IN_DOMAIN_PART) {
-            throw new WrongEmailAddressException("Domain part of email address is too long");
-        }
-    }
-
-    private void validateEmailAddress(String email) {
-        Pattern pattern = Pattern.compile(EMAIL_PATTERN);
-        if(!pattern.matcher(email).matches()) {
-            throw new WrongEmailAddressException("That email address is not valid");
-        }
-        if(getLocalPart(email).length() > MAX_NUMBER_OF_CHARACTERS_IN_LOCAL_PART) {
-            throw new WrongEmailAddressException("Local part of email address is too long");
-        }
+    /**
+     * Canonical form of an email address, under which it is validated, stored and looked up. Every entry
+     * point accepting an address must use it, so that one address never ends up under two keys.
+     */
+    public String normalize(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
     }
 
     /* That method at first checks whether string passed into parameter
@@ -62,15 +63,47 @@ public class BlacklistEmailValidator implements EmailValidator {
      */
     @Override
     public void validate(String email) {
-        validateEmailAddress(email);
-        validateDomain(email);
+        findViolation(email).ifPresent(violation -> {
+            throw new WrongEmailAddressException(violation);
+        });
     }
 
-    private String getDomainPart(String email) {
-        return email.substring(email.indexOf("@") + 1).toLowerCase();
+    /**
+     * Same checks as validate, but returns the reason of rejection instead of throwing, which is cheaper
+     * when many addresses are validated at once.
+     */
+    public Optional<String> findViolation(String email) {
+        if (!EMAIL_PATTERN.matcher(email).matches()) {
+            return Optional.of("That email address is not valid");
+        }
+        int at = email.indexOf('@');
+        if (at > MAX_NUMBER_OF_CHARACTERS_IN_LOCAL_PART) {
+            return Optional.of("Local part of email address is too long");
+        }
+        String domain = email.substring(at + 1).toLowerCase(Locale.ROOT);
+        if (isForbidden(domain)) {
+            return Optional.of("That domain is blocked");
+        }
+        if (domain.length() > MAX_NUMBER_OF_CHARACTERS_IN_DOMAIN_PART) {
+            return Optional.of("Domain part of email address is too long");
+        }
+        return Optional.empty();
+    }
+
+    private boolean isForbidden(String domain) {
+        if (forbiddenDomains.isEmpty()) {
+            return false;
+        }
+        for (int start = 0; start >= 0; start = next(domain, start)) {
+            if (forbiddenDomains.contains(domain.substring(start))) {
+                return true;
+            }
+        }
+        return false;
     }
 
-    private String getLocalPart(String email) {
-        return email.substring(0, email.indexOf("@")).toLowerCase();
+    private static int next(String domain, int start) {
+        int dot = domain.indexOf('.', start);
+        return dot < 0 ? -1 : dot + 1;
     }
-}
\ No newline at end of file
+}
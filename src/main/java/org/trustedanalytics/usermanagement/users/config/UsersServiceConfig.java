@@ -34,13 +34,23 @@ import org.trustedanalytics.uaa.UaaClient;
 import org.trustedanalytics.uaa.UaaOperations;
 import org.trustedanalytics.usermanagement.invitations.service.AccessInvitationsService;
 import org.trustedanalytics.usermanagement.invitations.service.InvitationsService;
+import org.trustedanalytics.usermanagement.metrics.DependencyMetrics;
+import org.trustedanalytics.usermanagement.security.ClientCredentialsTokenCache;
 import org.trustedanalytics.usermanagement.security.OAuth2PrivilegedInterceptor;
 import org.trustedanalytics.usermanagement.users.PasswordGenerator;
 import org.trustedanalytics.usermanagement.users.RandomPasswordGenerator;
 import org.trustedanalytics.usermanagement.users.rest.AuthGatewayOperations;
+import org.trustedanalytics.usermanagement.users.rest.UaaScimClient;
+import org.trustedanalytics.usermanagement.users.rest.UaaScimOperations;
+import org.trustedanalytics.usermanagement.users.service.AdminGroupIndex;
+import org.trustedanalytics.usermanagement.users.service.CachingUserDirectory;
+import org.trustedanalytics.usermanagement.users.service.UaaUserDirectory;
 import org.trustedanalytics.usermanagement.users.service.UaaUsersService;
+import org.trustedanalytics.usermanagement.users.service.UserDirectory;
 import org.trustedanalytics.usermanagement.users.service.UsersService;
 
+import java.time.Duration;
+
 import static java.util.Collections.singletonList;
 import static org.springframework.context.annotation.ScopedProxyMode.TARGET_CLASS;
 import static org.springframework.web.context.WebApplicationContext.SCOPE_REQUEST;
@@ -54,23 +64,66 @@ public class UsersServiceConfig {
     @Value("${oauth.resource}")
     private String apiBaseUrl;
 
+    @Value("${oauth.client_token.refresh_margin_seconds:60}")
+    private long tokenRefreshMarginSeconds;
+
+    @Value("${oauth.users_directory.refresh_seconds:60}")
+    private long userDirectoryRefreshSeconds;
+
+    @Value("${oauth.admin_group.ttl_seconds:60}")
+    private long adminGroupTtlSeconds;
+
     @Autowired
     private AuthTokenRetriever tokenRetriever;
 
     @Bean
-    protected OAuth2PrivilegedInterceptor oauth2PrivilegedInterceptor(OAuth2ProtectedResourceDetails clientCredentials) {
-        return new OAuth2PrivilegedInterceptor(clientCredentials);
+    protected ClientCredentialsTokenCache clientCredentialsTokenCache(OAuth2ProtectedResourceDetails clientCredentials,
+                                                                      DependencyMetrics dependencyMetrics) {
+        return new ClientCredentialsTokenCache(clientCredentials, Duration.ofSeconds(tokenRefreshMarginSeconds),
+                dependencyMetrics);
+    }
+
+    @Bean
+    protected OAuth2PrivilegedInterceptor oauth2PrivilegedInterceptor(ClientCredentialsTokenCache clientCredentialsTokenCache) {
+        return new OAuth2PrivilegedInterceptor(clientCredentialsTokenCache);
+    }
+
+    @Bean
+    protected UaaOperations uaaPrivilegedClient(RestOperations clientRestTemplate,
+                                                DependencyMetrics dependencyMetrics) {
+        return dependencyMetrics.instrument(UaaOperations.class,
+                new UaaClient(uaaBaseUrl, clientRestTemplate), "uaa");
     }
 
     @Bean
-    protected UaaOperations uaaPrivilegedClient(RestOperations clientRestTemplate) {
-        return new UaaClient(uaaBaseUrl, clientRestTemplate);
+    @Scope(value = SCOPE_REQUEST, proxyMode = TARGET_CLASS)
+    protected UaaOperations uaaClient(RestTemplate userRestTemplate, DependencyMetrics dependencyMetrics) {
+        return dependencyMetrics.instrument(UaaOperations.class,
+                new UaaClient(uaaBaseUrl, setAccessToken(userRestTemplate)), "uaa");
     }
 
     @Bean
     @Scope(value = SCOPE_REQUEST, proxyMode = TARGET_CLASS)
-    protected UaaOperations uaaClient(RestTemplate userRestTemplate) {
-        return new UaaClient(uaaBaseUrl, setAccessToken(userRestTemplate));
+    protected UaaScimOperations uaaScimClient(RestTemplate userRestTemplate, DependencyMetrics dependencyMetrics) {
+        return dependencyMetrics.instrument(UaaScimOperations.class,
+                new UaaScimClient(uaaBaseUrl, setAccessToken(userRestTemplate)), "uaa");
+    }
+
+    /**
+     * Cached only for the privileged client; user token calls must still be authorized by UAA each time.
+     */
+    @Bean
+    protected UaaScimOperations uaaPrivilegedScimClient(RestOperations clientRestTemplate,
+                                                        DependencyMetrics dependencyMetrics) {
+        return dependencyMetrics.instrument(UaaScimOperations.class,
+                new UaaScimClient(uaaBaseUrl, clientRestTemplate), "uaa");
+    }
+
+    @Bean
+    protected UserDirectory privilegedUserDirectory(UaaScimOperations uaaPrivilegedScimClient) {
+        return new CachingUserDirectory(
+                new UaaUserDirectory(uaaPrivilegedScimClient),
+                Duration.ofSeconds(userDirectoryRefreshSeconds));
     }
 
     private OAuth2Authentication getAuthentication() {
@@ -97,19 +150,25 @@ public class UsersServiceConfig {
 
     @Bean
     protected UsersService usersService(UaaOperations uaaClient,
+                                        UaaScimOperations uaaScimClient,
                                         InvitationsService invitationsService,
                                         AccessInvitationsService accessInvitationsService,
                                         AuthGatewayOperations authGatewayOperations) {
-        return new UaaUsersService(uaaClient, invitationsService, accessInvitationsService, authGatewayOperations);
+        return new UaaUsersService(uaaClient, new UaaUserDirectory(uaaScimClient),
+                new AdminGroupIndex(uaaClient, Duration.ZERO), invitationsService, accessInvitationsService,
+                authGatewayOperations);
     }
 
     @Bean
     protected UsersService privilegedUsersService(UaaOperations uaaPrivilegedClient,
+                                                  UserDirectory privilegedUserDirectory,
                                                   InvitationsService invitationsService,
                                                   AccessInvitationsService accessInvitationsService,
                                                   AuthGatewayOperations authGatewayOperations) {
         return new UaaUsersService(
                 uaaPrivilegedClient,
+                privilegedUserDirectory,
+                new AdminGroupIndex(uaaPrivilegedClient, Duration.ofSeconds(adminGroupTtlSeconds)),
                 invitationsService,
                 accessInvitationsService,
                 authGatewayOperations);
@@ -0,0 +1,50 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users.model;
+
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+
+/**
+ * One page of a SCIM user search. The filter and sort attribute use SCIM syntax, e.g.
+ * {@code userName co "john"} and {@code userName}.
+ */
+@Getter
+@EqualsAndHashCode
+public class UsersQuery {
+    public static final int DEFAULT_COUNT = 100;
+    public static final int MAX_COUNT = 500;
+
+    private final int startIndex;
+    private final int count;
+    private final String filter;
+    private final String sortBy;
+    private final boolean descending;
+
+    public UsersQuery(Integer startIndex, Integer count, String filter, String sortBy, boolean descending) {
+        this.startIndex = startIndex == null ? 1 : Math.max(1, startIndex);
+        this.count = count == null ? DEFAULT_COUNT : Math.min(MAX_COUNT, Math.max(0, count));
+        this.filter = filter;
+        this.sortBy = sortBy;
+        this.descending = descending;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("UsersQuery [startIndex=%d, count=%d, filter=%s, sortBy=%s, descending=%s]",
+                startIndex, count, filter, sortBy, descending);
+    }
+}
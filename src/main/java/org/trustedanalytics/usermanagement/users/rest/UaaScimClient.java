@@ -0,0 +1,160 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users.rest;
+
+import com.google.common.collect.Iterables;
+import com.google.common.escape.Escaper;
+import com.google.common.net.UrlEscapers;
+import org.cloudfoundry.identity.uaa.rest.SearchResults;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestOperations;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.trustedanalytics.usermanagement.users.model.UsersPage;
+import org.trustedanalytics.usermanagement.users.model.UsersQuery;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+public class UaaScimClient implements UaaScimOperations {
+    private static final int PAGE_SIZE = 500;
+    private static final int NAMES_PER_FILTER = 50;
+    private static final String LISTED_ATTRIBUTES = "id,userName";
+    // escapes '+' too, which UriComponents.encode() leaves as it is and UAA would decode as a space
+    private static final Escaper QUERY_PARAM_ESCAPER = UrlEscapers.urlFormParameterEscaper();
+    private static final ParameterizedTypeReference<SearchResults<ScimUser>> USERS_TYPE =
+            new ParameterizedTypeReference<SearchResults<ScimUser>>() {};
+
+    private final String uaaBaseUrl;
+    private final RestOperations restTemplate;
+
+    public UaaScimClient(String uaaBaseUrl, RestOperations restTemplate) {
+        this.uaaBaseUrl = uaaBaseUrl;
+        this.restTemplate = restTemplate;
+    }
+
+    @Override
+    public Optional<ScimUser> getUser(String userGuid) {
+        try {
+            return Optional.ofNullable(
+                    restTemplate.getForObject(uaaBaseUrl + "/Users/{id}", ScimUser.class, userGuid));
+        } catch (HttpClientErrorException e) {
+            if (e.getStatusCode() == HttpStatus.NOT_FOUND) {
+                return Optional.empty();
+            }
+            throw e;
+        }
+    }
+
+    @Override
+    public Optional<ScimUser> findUserByName(String username) {
+        URI url = UriComponentsBuilder.fromHttpUrl(uaaBaseUrl)
+                .path("/Users")
+                .queryParam("filter", escape(userNameFilter(username)))
+                .queryParam("count", 1)
+                .build(true).toUri();
+        SearchResults<ScimUser> results = restTemplate.exchange(url, HttpMethod.GET, null, USERS_TYPE).getBody();
+        return results.getResources().stream().findFirst();
+    }
+
+    /**
+     * Usernames are looked up NAMES_PER_FILTER at a time with one "or" filter, instead of one request per
+     * username.
+     */
+    @Override
+    public Set<String> findUserNames(Collection<String> usernames) {
+        Set<String> found = new HashSet<>();
+        for (List<String> chunk : Iterables.partition(usernames, NAMES_PER_FILTER)) {
+            String filter = chunk.stream().map(UaaScimClient::userNameFilter).collect(Collectors.joining(" or "));
+            URI url = UriComponentsBuilder.fromHttpUrl(uaaBaseUrl)
+                    .path("/Users")
+                    .queryParam("filter", escape(filter))
+                    .queryParam("count", chunk.size())
+                    .queryParam("attributes", "userName")
+                    .build(true).toUri();
+            restTemplate.exchange(url, HttpMethod.GET, null, USERS_TYPE).getBody().getResources()
+                    .forEach(user -> found.add(user.getUserName().toLowerCase()));
+        }
+        return found;
+    }
+
+    /**
+     * Reads totalResults of a one element page.
+     */
+    @Override
+    public int countUsers() {
+        SearchResults<ScimUser> results = restTemplate.exchange(
+                uaaBaseUrl + "/Users?count=1&attributes=id", HttpMethod.GET, null, USERS_TYPE)
+                .getBody();
+        return results.getTotalResults();
+    }
+
+    @Override
+    public List<ScimUser> getUsers() {
+        List<ScimUser> users = new ArrayList<>();
+        int startIndex = 1;
+        while (true) {
+            SearchResults<ScimUser> page = restTemplate.exchange(
+                    uaaBaseUrl + "/Users?startIndex={startIndex}&count={count}", HttpMethod.GET, null, USERS_TYPE,
+                    startIndex, PAGE_SIZE)
+                    .getBody();
+            users.addAll(page.getResources());
+            startIndex += page.getResources().size();
+            if (page.getResources().isEmpty() || startIndex > page.getTotalResults()) {
+                return users;
+            }
+        }
+    }
+
+    /**
+     * Asks UAA to return only the attributes needed to list the users.
+     */
+    @Override
+    public UsersPage<ScimUser> getUsers(UsersQuery query) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(uaaBaseUrl)
+                .path("/Users")
+                .queryParam("startIndex", query.getStartIndex())
+                .queryParam("count", query.getCount())
+                .queryParam("attributes", LISTED_ATTRIBUTES);
+        if (query.getFilter() != null) {
+            uri.queryParam("filter", escape(query.getFilter()));
+        }
+        if (query.getSortBy() != null) {
+            uri.queryParam("sortBy", escape(query.getSortBy()))
+                    .queryParam("sortOrder", query.isDescending() ? "descending" : "ascending");
+        }
+        URI url = uri.build(true).toUri();
+        SearchResults<ScimUser> page = restTemplate.exchange(url, HttpMethod.GET, null, USERS_TYPE).getBody();
+        return new UsersPage<>(new ArrayList<>(page.getResources()), query.getStartIndex(), page.getTotalResults());
+    }
+
+    private static String escape(String queryParam) {
+        return QUERY_PARAM_ESCAPER.escape(queryParam);
+    }
+
+    private static String userNameFilter(String username) {
+        return "userName eq \"" + username.replace("\"", "\\\"") + "\"";
+    }
+}
@@ -0,0 +1,51 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users.rest;
+
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.trustedanalytics.usermanagement.users.model.UsersPage;
+import org.trustedanalytics.usermanagement.users.model.UsersQuery;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * SCIM user queries that UaaOperations lacks: single user lookups and paged listing.
+ */
+public interface UaaScimOperations {
+    Optional<ScimUser> getUser(String userGuid);
+
+    Optional<ScimUser> findUserByName(String username);
+
+    /**
+     * Returns those of the usernames that belong to existing users, lower-cased.
+     */
+    Set<String> findUserNames(Collection<String> usernames);
+
+    /**
+     * Number of users in UAA.
+     */
+    int countUsers();
+
+    List<ScimUser> getUsers();
+
+    /**
+     * Fetches a single page, letting UAA filter, sort and page the users.
+     */
+    UsersPage<ScimUser> getUsers(UsersQuery query);
+}
@@ -20,11 +20,13 @@ import io.swagger.annotations.ApiParam;
 import io.swagger.annotations.ApiResponse;
 import io.swagger.annotations.ApiResponses;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.trustedanalytics.usermanagement.common.EntityNotFoundException;
 import org.trustedanalytics.usermanagement.orgs.service.OrganizationsStorage;
@@ -35,6 +37,8 @@ import org.trustedanalytics.usermanagement.users.model.User;
 import org.trustedanalytics.usermanagement.users.model.UserRequest;
 import org.trustedanalytics.usermanagement.users.model.UserRole;
 import org.trustedanalytics.usermanagement.users.model.UserRolesRequest;
+import org.trustedanalytics.usermanagement.users.model.UsersPage;
+import org.trustedanalytics.usermanagement.users.model.UsersQuery;
 import org.trustedanalytics.usermanagement.users.service.UsersService;
 
 import java.util.Collection;
@@ -46,6 +50,7 @@ import static org.springframework.web.bind.annotation.RequestMethod.*;
 public class UsersController {
 
     public static final String ORG_USERS_URL = "/rest/orgs/{org}/users";
+    public static final String TOTAL_COUNT_HEADER = "X-Total-Count";
 
     private final UsersService usersService;
     private final UsersService privilegedUsersService;
@@ -75,16 +80,40 @@ public class UsersController {
             value = "Returns list of users which has at least one role in the organization. NOTE: The CF role " +
                     "'Users' is not included ",
             notes = "Privilege level: Consumer of this endpoint must be a member of specified organization based on " +
-                    "valid access token")
+                    "valid access token. When none of the paging, filter or sort parameters is given, all users are " +
+                    "returned. The total number of matching users is returned in the X-Total-Count header.")
     @ApiResponses(value = {
         @ApiResponse(code = 200, message = "OK", response = User.class, responseContainer = "List"),
         @ApiResponse(code = 400, message = "Request was malformed. eg. organization with ID 'org' doesn't exist"),
         @ApiResponse(code = 500, message = "Internal server error, e.g. error connecting to CloudController")
     })
     @RequestMapping(value = ORG_USERS_URL, method = GET, produces = APPLICATION_JSON_VALUE)
-    public Collection<User> getOrgUsers(@PathVariable String org, @ApiParam(hidden = true) Authentication auth) {
+    public ResponseEntity<Collection<User>> getOrgUsers(
+            @PathVariable String org,
+            @ApiParam("1-based index of the first user to return")
+            @RequestParam(required = false) Integer startIndex,
+            @ApiParam("Maximum number of users to return, at most 500")
+            @RequestParam(required = false) Integer count,
+            @ApiParam("SCIM filter, e.g. userName co \"john\"")
+            @RequestParam(required = false) String filter,
+            @ApiParam("SCIM attribute to sort by, e.g. userName")
+            @RequestParam(required = false) String sortBy,
+            @ApiParam(value = "Sort order", allowableValues = "ascending,descending")
+            @RequestParam(defaultValue = "ascending") String sortOrder,
+            @ApiParam(hidden = true) Authentication auth) {
         verifyOrganizationExists(org);
-        return determinePriviledgeLevel(auth).getOrgUsers(org);
+        UsersService service = determinePriviledgeLevel(auth);
+        if (startIndex == null && count == null && filter == null && sortBy == null) {
+            Collection<User> users = service.getOrgUsers(org);
+            return ResponseEntity.ok()
+                    .header(TOTAL_COUNT_HEADER, String.valueOf(users.size()))
+                    .body(users);
+        }
+        UsersQuery query = new UsersQuery(startIndex, count, filter, sortBy, "descending".equals(sortOrder));
+        UsersPage<User> page = service.getOrgUsers(org, query);
+        return ResponseEntity.ok()
+                .header(TOTAL_COUNT_HEADER, String.valueOf(page.getTotalResults()))
+                .body(page.getResources());
     }
 
     @ApiOperation(
@@ -102,6 +131,7 @@ public class UsersController {
             produces = APPLICATION_JSON_VALUE, consumes = APPLICATION_JSON_VALUE)
     public void createOrgUser(@RequestBody UserRequest userRequest, @PathVariable String org,
                               @ApiParam(hidden = true) Authentication auth) {
+        userRequest.setUsername(emailValidator.normalize(userRequest.getUsername()));
         emailValidator.validate(userRequest.getUsername());
         verifyOrganizationExists(org);
         String userPerformingRequestGuid = detailsFinder.findUserName(auth);
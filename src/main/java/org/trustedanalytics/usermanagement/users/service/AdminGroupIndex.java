@@ -0,0 +1,140 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users.service;
+
+import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
+import org.trustedanalytics.uaa.UaaOperations;
+import org.trustedanalytics.usermanagement.common.EntityNotFoundException;
+import org.trustedanalytics.usermanagement.security.service.UserDetailsFinderImpl;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Set of admin group member IDs, fetched from UAA at most once per ttl and kept up to date on changes
+ * made through addMember() and removeMember(). A zero ttl fetches the group on every snapshot() call, which
+ * is needed when the UAA client acts on behalf of the current user.
+ */
+public class AdminGroupIndex {
+    private final UaaOperations uaaClient;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    private volatile Snapshot snapshot;
+
+    public AdminGroupIndex(UaaOperations uaaClient, Duration ttl) {
+        this(uaaClient, ttl, Clock.systemUTC());
+    }
+
+    AdminGroupIndex(UaaOperations uaaClient, Duration ttl, Clock clock) {
+        this.uaaClient = uaaClient;
+        this.ttlMillis = ttl.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the current members, fetching the group when the ttl has elapsed. Throws
+     * EntityNotFoundException when the group does not exist in UAA.
+     */
+    public Snapshot snapshot() {
+        if (ttlMillis <= 0) {
+            return load();
+        }
+        Snapshot current = snapshot;
+        if (isStale(current)) {
+            current = reload();
+        }
+        return current;
+    }
+
+    /**
+     * Adds the user to the group as currently stored in UAA. Runs under the same lock as a reload, so
+     * the change cannot be overwritten by a snapshot fetched before it.
+     */
+    public synchronized void addMember(String userGuid) {
+        ScimGroup group = fetchGroup();
+        uaaClient.addUserToGroup(group, userGuid);
+        Snapshot updated = toSnapshot(group);
+        updated.memberIds.add(userGuid);
+        cache(updated);
+    }
+
+    public synchronized void removeMember(String userGuid) {
+        ScimGroup group = fetchGroup();
+        uaaClient.removeUserFromGroup(group, userGuid);
+        Snapshot updated = toSnapshot(group);
+        updated.memberIds.remove(userGuid);
+        cache(updated);
+    }
+
+    private synchronized Snapshot reload() {
+        Snapshot current = snapshot;
+        if (isStale(current)) {
+            current = load();
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private void cache(Snapshot updated) {
+        if (ttlMillis > 0) {
+            snapshot = updated;
+        }
+    }
+
+    private boolean isStale(Snapshot current) {
+        return current == null || clock.millis() - current.loadedAt >= ttlMillis;
+    }
+
+    private Snapshot load() {
+        return toSnapshot(fetchGroup());
+    }
+
+    private ScimGroup fetchGroup() {
+        return uaaClient
+                .getGroup(UserDetailsFinderImpl.ADMIN_GROUP)
+                .orElseThrow(() -> new EntityNotFoundException("Group " + UserDetailsFinderImpl.ADMIN_GROUP +
+                        " not found in UAA database"));
+    }
+
+    private Snapshot toSnapshot(ScimGroup group) {
+        Snapshot loaded = new Snapshot(clock.millis());
+        Optional.ofNullable(group.getMembers())
+                .orElse(Collections.emptyList())
+                .stream()
+                .map(ScimGroupMember::getMemberId)
+                .forEach(loaded.memberIds::add);
+        return loaded;
+    }
+
+    public static class Snapshot {
+        private final long loadedAt;
+        private final Set<String> memberIds = ConcurrentHashMap.newKeySet();
+
+        private Snapshot(long loadedAt) {
+            this.loadedAt = loadedAt;
+        }
+
+        public boolean isMember(String userGuid) {
+            return memberIds.contains(userGuid);
+        }
+    }
+}
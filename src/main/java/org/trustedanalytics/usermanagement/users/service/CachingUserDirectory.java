@@ -0,0 +1,148 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users.service;
+
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.trustedanalytics.usermanagement.users.model.UsersPage;
+import org.trustedanalytics.usermanagement.users.model.UsersQuery;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a copy of all users, indexed by GUID and username, and reloads it from the delegate once it is
+ * older than the refresh interval. Users missing from the copy are looked up one by one, so that users
+ * created since the last reload are still found. Changes made by other UAA clients may be seen only after
+ * the next reload. Paged queries always go to the delegate, which filters and sorts them server side.
+ */
+public class CachingUserDirectory implements UserDirectory {
+    private final UserDirectory delegate;
+    private final long refreshIntervalMillis;
+    private final Clock clock;
+
+    private volatile Snapshot snapshot;
+
+    public CachingUserDirectory(UserDirectory delegate, Duration refreshInterval) {
+        this(delegate, refreshInterval, Clock.systemUTC());
+    }
+
+    CachingUserDirectory(UserDirectory delegate, Duration refreshInterval, Clock clock) {
+        this.delegate = delegate;
+        this.refreshIntervalMillis = refreshInterval.toMillis();
+        this.clock = clock;
+    }
+
+    @Override
+    public Collection<ScimUser> getUsers() {
+        return Collections.unmodifiableCollection(current().byId.values());
+    }
+
+    @Override
+    public UsersPage<ScimUser> getUsers(UsersQuery query) {
+        return delegate.getUsers(query);
+    }
+
+    @Override
+    public Optional<ScimUser> getUser(String userGuid) {
+        Snapshot current = current();
+        ScimUser user = current.byId.get(userGuid);
+        if (user != null) {
+            return Optional.of(user);
+        }
+        Optional<ScimUser> found = delegate.getUser(userGuid);
+        found.ifPresent(current::put);
+        return found;
+    }
+
+    @Override
+    public Optional<ScimUser> getUserByName(String username) {
+        Snapshot current = current();
+        ScimUser user = current.byName.get(username);
+        if (user != null) {
+            return Optional.of(user);
+        }
+        Optional<ScimUser> found = delegate.getUserByName(username);
+        found.ifPresent(current::put);
+        return found;
+    }
+
+    @Override
+    public synchronized void invalidate(String userGuid) {
+        Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        Optional<ScimUser> user = delegate.getUser(userGuid);
+        if (user.isPresent()) {
+            current.put(user.get());
+        } else {
+            current.remove(userGuid);
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null || isStale(current)) {
+            current = reload();
+        }
+        return current;
+    }
+
+    private synchronized Snapshot reload() {
+        Snapshot current = snapshot;
+        if (current == null || isStale(current)) {
+            long loadedAt = clock.millis();
+            current = new Snapshot(loadedAt);
+            delegate.getUsers().forEach(current::put);
+            snapshot = current;
+        }
+        return current;
+    }
+
+    private boolean isStale(Snapshot current) {
+        return clock.millis() - current.loadedAt >= refreshIntervalMillis;
+    }
+
+    private static class Snapshot {
+        private final long loadedAt;
+        private final Map<String, ScimUser> byId = new ConcurrentHashMap<>();
+        private final Map<String, ScimUser> byName = new ConcurrentHashMap<>();
+
+        Snapshot(long loadedAt) {
+            this.loadedAt = loadedAt;
+        }
+
+        void put(ScimUser user) {
+            ScimUser previous = byId.put(user.getId(), user);
+            if (previous != null && !previous.getUserName().equals(user.getUserName())) {
+                byName.remove(previous.getUserName(), previous);
+            }
+            byName.put(user.getUserName(), user);
+        }
+
+        void remove(String userGuid) {
+            ScimUser previous = byId.remove(userGuid);
+            if (previous != null) {
+                byName.remove(previous.getUserName(), previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users.service;
+
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.trustedanalytics.usermanagement.users.model.UsersPage;
+import org.trustedanalytics.usermanagement.users.model.UsersQuery;
+import org.trustedanalytics.usermanagement.users.rest.UaaScimOperations;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Uncached directory which asks UAA on every call.
+ */
+public class UaaUserDirectory implements UserDirectory {
+    private final UaaScimOperations scimClient;
+
+    public UaaUserDirectory(UaaScimOperations scimClient) {
+        this.scimClient = scimClient;
+    }
+
+    @Override
+    public Collection<ScimUser> getUsers() {
+        return scimClient.getUsers();
+    }
+
+    @Override
+    public UsersPage<ScimUser> getUsers(UsersQuery query) {
+        return scimClient.getUsers(query);
+    }
+
+    @Override
+    public Optional<ScimUser> getUser(String userGuid) {
+        return scimClient.getUser(userGuid);
+    }
+
+    @Override
+    public Optional<ScimUser> getUserByName(String username) {
+        return scimClient.findUserByName(username);
+    }
+
+    @Override
+    public void invalidate(String userGuid) {
+        // nothing is cached
+    }
+}
@@ -15,74 +15,106 @@
  */
 package org.trustedanalytics.usermanagement.users.service;
 
-import org.cloudfoundry.identity.uaa.scim.ScimGroup;
 import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.trustedanalytics.uaa.UaaOperations;
-import org.trustedanalytics.uaa.UserIdNamePair;
 import org.trustedanalytics.usermanagement.common.EntityNotFoundException;
 import org.trustedanalytics.usermanagement.invitations.UserExistsException;
 import org.trustedanalytics.usermanagement.invitations.service.AccessInvitations;
 import org.trustedanalytics.usermanagement.invitations.service.AccessInvitationsService;
 import org.trustedanalytics.usermanagement.invitations.service.InvitationsService;
-import org.trustedanalytics.usermanagement.security.service.UserDetailsFinderImpl;
 import org.trustedanalytics.usermanagement.users.model.User;
 import org.trustedanalytics.usermanagement.users.model.UserRequest;
 import org.trustedanalytics.usermanagement.users.model.UserRole;
+import org.trustedanalytics.usermanagement.users.model.UsersPage;
+import org.trustedanalytics.usermanagement.users.model.UsersQuery;
 import org.trustedanalytics.usermanagement.users.rest.AuthGatewayOperations;
 
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 // TODO: missing multi-organization feature.
 // Currently Org ID is verified on REST controller level. Users are not bound to any organization, thus the org ID
 // is ignored on the service level.
 
-public class UaaUsersService implements UsersService {
+public class UaaUsersService implements UsersService, ApplicationEventPublisherAware {
 
     private final UaaOperations uaaClient;
+    private final UserDirectory userDirectory;
+    private final AdminGroupIndex adminGroupIndex;
     private final InvitationsService invitationsService;
     private final AccessInvitationsService accessInvitationsService;
     private final AuthGatewayOperations authGatewayOperations;
+    private ApplicationEventPublisher eventPublisher;
 
     public UaaUsersService(UaaOperations uaaClient,
+                           UserDirectory userDirectory,
+                           AdminGroupIndex adminGroupIndex,
                            InvitationsService invitationsService,
                            AccessInvitationsService accessInvitationsService,
                            AuthGatewayOperations authGatewayOperations) {
         super();
         this.uaaClient = uaaClient;
+        this.userDirectory = userDirectory;
+        this.adminGroupIndex = adminGroupIndex;
         this.invitationsService = invitationsService;
         this.accessInvitationsService = accessInvitationsService;
         this.authGatewayOperations = authGatewayOperations;
     }
 
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
     @Override
     public Collection<User> getOrgUsers(String orgGuid) {
-        Collection<ScimUser> scimUsers = uaaClient.getUsers().getResources();
-        return scimUsers.stream()
-                .map(scimUser -> new User(scimUser.getId(), scimUser.getUserName(),
-                        extractOrgRole(scimUser)))
+        AdminGroupIndex.Snapshot admins = adminGroupIndex.snapshot();
+        return userDirectory.getUsers().stream()
+                .map(scimUser -> toUser(scimUser, admins))
                 .collect(Collectors.toList());
     }
 
-    private UserRole extractOrgRole(ScimUser user) {
-        if (user.getGroups().stream().anyMatch(g -> g.getDisplay().equals(UserDetailsFinderImpl.ADMIN_GROUP))) {
-            return UserRole.ADMIN;
-        }
-        return UserRole.USER;
+    @Override
+    public Map<String, Collection<User>> getOrgsUsers(Collection<String> orgGuids) {
+        // users are not bound to organizations (see the TODO above), so every organization shares one listing
+        Collection<User> users = getOrgUsers(null);
+        return orgGuids.stream()
+                .distinct()
+                .collect(Collectors.toMap(Function.identity(), orgGuid -> users));
+    }
+
+    @Override
+    public UsersPage<User> getOrgUsers(String orgGuid, UsersQuery query) {
+        UsersPage<ScimUser> page = userDirectory.getUsers(query);
+        AdminGroupIndex.Snapshot admins = adminGroupIndex.snapshot();
+        List<User> users = page.getResources().stream()
+                .map(scimUser -> toUser(scimUser, admins))
+                .collect(Collectors.toList());
+        return new UsersPage<>(users, page.getStartIndex(), page.getTotalResults());
+    }
+
+    private User toUser(ScimUser scimUser, AdminGroupIndex.Snapshot admins) {
+        UserRole role = admins.isMember(scimUser.getId()) ? UserRole.ADMIN : UserRole.USER;
+        return new User(scimUser.getId(), scimUser.getUserName(), role);
     }
 
     @Override
     public void addOrgUser(UserRequest userRequest, String orgGuid, String currentUser) {
         String userToAddUsername = userRequest.getUsername();
-        Optional<UserIdNamePair> idNamePair = uaaClient.findUserIdByName(userToAddUsername);
-        if(idNamePair.isPresent()) {
+        if (userDirectory.getUserByName(userToAddUsername).isPresent()) {
             throw new UserExistsException(String.format("User %s already exists", userToAddUsername));
         }
 
         UserRole role = Optional.ofNullable(userRequest.getRole()).orElse(UserRole.USER);
         inviteUserToOrg(userToAddUsername, currentUser, orgGuid, role);
+        publish(UserChangedEvent.membershipChanged(this, role));
     }
 
     private void inviteUserToOrg(String username, String currentUser, String orgGuid, UserRole role) {
@@ -97,17 +129,21 @@ public class UaaUsersService implements UsersService {
     public void deleteUserFromOrg(String userGuid, String orgGuid) {
         verifyUserBelongsToOrganization(userGuid, orgGuid);
         uaaClient.deleteUser(userGuid);
+        userDirectory.invalidate(userGuid);
         authGatewayOperations.deleteUser(orgGuid, userGuid);
+        publish(UserChangedEvent.deleted(this, userGuid));
     }
 
     @Override
     public UserRole updateOrgUserRole(String userGuid, String orgGuid, UserRole role) {
         verifyUserBelongsToOrganization(userGuid, orgGuid);
-        ScimGroup adminGroup = getAdminGroup();
-        if (isGroupMember(adminGroup, userGuid) && role.equals(UserRole.USER)) {
-            uaaClient.removeUserFromGroup(adminGroup, userGuid);
-        } else if (!isGroupMember(adminGroup, userGuid) && role.equals(UserRole.ADMIN)) {
-            uaaClient.addUserToGroup(adminGroup, userGuid);
+        boolean isAdmin = adminGroupIndex.snapshot().isMember(userGuid);
+        if (isAdmin && role.equals(UserRole.USER)) {
+            adminGroupIndex.removeMember(userGuid);
+            publish(UserChangedEvent.roleChanged(this, userGuid, role));
+        } else if (!isAdmin && role.equals(UserRole.ADMIN)) {
+            adminGroupIndex.addMember(userGuid);
+            publish(UserChangedEvent.roleChanged(this, userGuid, role));
         }
         return role;
     }
@@ -122,19 +158,14 @@ public class UaaUsersService implements UsersService {
                     updateOrgUserRole(uuid, orgGuid, role));
     }
 
-    private ScimGroup getAdminGroup() {
-        return uaaClient
-                .getGroup(UserDetailsFinderImpl.ADMIN_GROUP)
-                .orElseThrow(() -> new EntityNotFoundException("Group " + UserDetailsFinderImpl.ADMIN_GROUP +
-                " not found in UAA database"));
-    }
-
-    private boolean isGroupMember(ScimGroup group, String userGuid) {
-        return group.getMembers().stream().anyMatch(m -> m.getMemberId().equals(userGuid));
+    private void publish(UserChangedEvent event) {
+        if (eventPublisher != null) {
+            eventPublisher.publishEvent(event);
+        }
     }
 
     private void verifyUserBelongsToOrganization(String userId, String orgId) {
-        if (getOrgUsers(orgId).stream().noneMatch(x -> userId.equals(x.getGuid()))) {
+        if (!userDirectory.getUser(userId).isPresent()) {
             throw new EntityNotFoundException(String.format("The user with ID %s does not exist", userId));
         }
     }
@@ -0,0 +1,78 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users.service;
+
+import org.springframework.context.ApplicationEvent;
+import org.trustedanalytics.usermanagement.users.model.UserRole;
+
+/**
+ * Published after a UsersService or an InvitationsService changed a user or the membership of an organization.
+ */
+public class UserChangedEvent extends ApplicationEvent {
+
+    public enum Type {
+        CREATED, DELETED, ROLE_CHANGED, MEMBERSHIP_CHANGED
+    }
+
+    private final Type type;
+    private final String userGuid;
+    private final UserRole role;
+
+    private UserChangedEvent(Object source, Type type, String userGuid, UserRole role) {
+        super(source);
+        this.type = type;
+        this.userGuid = userGuid;
+        this.role = role;
+    }
+
+    public static UserChangedEvent created(Object source, String userGuid) {
+        return new UserChangedEvent(source, Type.CREATED, userGuid, null);
+    }
+
+    public static UserChangedEvent deleted(Object source, String userGuid) {
+        return new UserChangedEvent(source, Type.DELETED, userGuid, null);
+    }
+
+    public static UserChangedEvent roleChanged(Object source, String userGuid, UserRole role) {
+        return new UserChangedEvent(source, Type.ROLE_CHANGED, userGuid, role);
+    }
+
+    /**
+     * Someone was invited to or joined an organization; the user may not exist in UAA yet, so no guid is known.
+     */
+    public static UserChangedEvent membershipChanged(Object source, UserRole role) {
+        return new UserChangedEvent(source, Type.MEMBERSHIP_CHANGED, null, role);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public String getUserGuid() {
+        return userGuid;
+    }
+
+    public boolean isDeleted() {
+        return type == Type.DELETED;
+    }
+
+    /**
+     * New role of the user, or null when the user was created or deleted.
+     */
+    public UserRole getRole() {
+        return role;
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users.service;
+
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.trustedanalytics.usermanagement.users.model.UsersPage;
+import org.trustedanalytics.usermanagement.users.model.UsersQuery;
+
+import java.util.Collection;
+import java.util.Optional;
+
+/**
+ * Read access to UAA users, possibly served from a local copy.
+ */
+public interface UserDirectory {
+    Collection<ScimUser> getUsers();
+
+    UsersPage<ScimUser> getUsers(UsersQuery query);
+
+    Optional<ScimUser> getUser(String userGuid);
+
+    Optional<ScimUser> getUserByName(String username);
+
+    /**
+     * Tells the directory that the user was changed or deleted, so that a cached copy is refreshed.
+     */
+    void invalidate(String userGuid);
+}
@@ -18,12 +18,22 @@ package org.trustedanalytics.usermanagement.users.service;
 import org.trustedanalytics.usermanagement.users.model.User;
 import org.trustedanalytics.usermanagement.users.model.UserRequest;
 import org.trustedanalytics.usermanagement.users.model.UserRole;
+import org.trustedanalytics.usermanagement.users.model.UsersPage;
+import org.trustedanalytics.usermanagement.users.model.UsersQuery;
 
 import java.util.Collection;
+import java.util.Map;
 
 public interface UsersService {
     Collection<User> getOrgUsers(String orgGuid);
 
+    UsersPage<User> getOrgUsers(String orgGuid, UsersQuery query);
+
+    /**
+     * Returns the users of every given organization, fetching listings shared by several organizations only once.
+     */
+    Map<String, Collection<User>> getOrgsUsers(Collection<String> orgGuids);
+
     void addOrgUser(UserRequest userRequest, String org, String currentUser);
 
     void deleteUserFromOrg(String userGuid, String orgId);
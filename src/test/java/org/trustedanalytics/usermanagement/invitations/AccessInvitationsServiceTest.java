@@ -26,10 +26,12 @@ import org.trustedanalytics.usermanagement.invitations.service.AccessInvitations
 import org.trustedanalytics.usermanagement.storage.KeyValueStore;
 
 import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
@@ -73,25 +75,31 @@ public class AccessInvitationsServiceTest {
 
     @Test
     public void testCreateOrUpdateInvitation_invitationDoesNotExists_createsNew() {
-        when(mockInvitationsStore.hasKey(USER_EMAIL)).thenReturn(false);
+        computeOn(null);
         Consumer consumer = mock(Consumer.class);
         AccessInvitationsService.CreateOrUpdateState state = sut.createOrUpdateInvitation(USER_EMAIL, consumer);
 
-        verify(consumer).accept(any());
+        verify(consumer).accept(any(AccessInvitations.class));
         verify(mockInvitationsStore, never()).get(anyString());
+        verify(mockInvitationsStore, never()).put(anyString(), any());
         assertEquals(AccessInvitationsService.CreateOrUpdateState.CREATED, state);
     }
 
     @Test
     public void testCreateOrUpdateInvitation_invitationExists_replace() {
-        when(mockInvitationsStore.hasKey(USER_EMAIL)).thenReturn(true);
+        computeOn(mockUserInvitations);
         Consumer consumer = mock(Consumer.class);
         AccessInvitationsService.CreateOrUpdateState state = sut.createOrUpdateInvitation(USER_EMAIL, consumer);
 
-        verify(consumer).accept(any());
-        verify(mockInvitationsStore).get(anyString());
+        verify(consumer).accept(mockUserInvitations);
+        verify(mockInvitationsStore, never()).get(anyString());
         assertEquals(AccessInvitationsService.CreateOrUpdateState.UPDATED, state);
+    }
 
+    @SuppressWarnings("unchecked")
+    private void computeOn(AccessInvitations current) {
+        when(mockInvitationsStore.compute(eq(USER_EMAIL), any(UnaryOperator.class), any()))
+                .thenAnswer(invocation -> ((UnaryOperator<AccessInvitations>) invocation.getArguments()[1]).apply(current));
     }
 
 
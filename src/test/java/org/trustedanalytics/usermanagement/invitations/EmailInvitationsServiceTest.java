@@ -28,9 +28,11 @@ import org.springframework.context.annotation.Profile;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.thymeleaf.context.IContext;
 import org.thymeleaf.spring4.SpringTemplateEngine;
 import org.trustedanalytics.uaa.UaaOperations;
 import org.trustedanalytics.uaa.UserIdNamePair;
+import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCode;
 import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCodeService;
 import org.trustedanalytics.usermanagement.invitations.service.AccessInvitations;
 import org.trustedanalytics.usermanagement.invitations.service.AccessInvitationsService;
@@ -44,13 +46,24 @@ import org.trustedanalytics.usermanagement.storage.KeyValueStore;
 import org.trustedanalytics.usermanagement.users.model.UserRole;
 import org.trustedanalytics.usermanagement.users.model.UserState;
 import org.trustedanalytics.usermanagement.users.rest.AuthGatewayOperations;
-
+import org.trustedanalytics.usermanagement.users.rest.UaaScimOperations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(SpringJUnit4ClassRunner.class)
@@ -73,6 +86,12 @@ public class EmailInvitationsServiceTest {
     @Autowired
     private AuthGatewayOperations authGatewayOperations;
 
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private SecurityCodeService securityCodeService;
+
     @Rule
     public ExpectedException exception = ExpectedException.none();
 
@@ -92,7 +111,9 @@ public class EmailInvitationsServiceTest {
 
         @Bean
         public SpringTemplateEngine springTemplateEngine() {
-            return mock(SpringTemplateEngine.class);
+            SpringTemplateEngine templateEngine = mock(SpringTemplateEngine.class);
+            when(templateEngine.process(anyString(), any(IContext.class))).thenReturn("<html></html>");
+            return templateEngine;
         }
 
         @Bean
@@ -108,6 +129,11 @@ public class EmailInvitationsServiceTest {
             return uaaOperations;
         }
 
+        @Bean
+        public UaaScimOperations uaaPrivilegedScimClient() {
+            return mock(UaaScimOperations.class);
+        }
+
         @Bean
         public AuthGatewayOperations authGatewayOperations() {
             final AuthGatewayOperations authGatewayOperations = mock(AuthGatewayOperations.class);
@@ -154,6 +180,28 @@ public class EmailInvitationsServiceTest {
         inOrder.verify(authGatewayOperations).createUser(eq(SAMPLE_ORG_ID), eq(userGuid.get()), any());
     }
 
+    @Test
+    public void sendInviteEmails_oneDeliveryFails_othersSentAndFailedCodeRemoved() {
+        String failingEmail = "failing@example.com";
+        String sentEmail = "sent@example.com";
+        SecurityCode failingCode = new SecurityCode(failingEmail, "failing-code");
+        Map<String, SecurityCode> codes = new LinkedHashMap<>();
+        codes.put(failingEmail, failingCode);
+        codes.put(sentEmail, new SecurityCode(sentEmail, "sent-code"));
+        when(securityCodeService.generateCodes(Arrays.asList(failingEmail, sentEmail))).thenReturn(codes);
+        doThrow(new IllegalStateException("rejected")).when(messageService)
+                .sendMimeMessage(eq(failingEmail), anyString(), anyString());
+        List<String> failed = new ArrayList<>();
+
+        Map<String, String> links = sut.sendInviteEmails(Arrays.asList(failingEmail, sentEmail), "admin",
+                (email, e) -> failed.add(email));
+
+        assertEquals(Collections.singleton(sentEmail), links.keySet());
+        assertEquals(Collections.singletonList(failingEmail), failed);
+        verify(securityCodeService).redeem(failingCode);
+        verify(messageService).sendMimeMessage(eq(sentEmail), anyString(), anyString());
+    }
+
     @Test
     public void createUser_userExists_throwUserExistException() {
         exception.expect(UserExistsException.class);
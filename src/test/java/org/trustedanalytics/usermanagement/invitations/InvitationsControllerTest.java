@@ -19,11 +19,14 @@ import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.springframework.security.core.Authentication;
+import org.trustedanalytics.usermanagement.invitations.model.BulkInvitation;
 import org.trustedanalytics.usermanagement.invitations.model.Invitation;
 import org.trustedanalytics.usermanagement.invitations.model.InvitationErrorDescription;
+import org.trustedanalytics.usermanagement.invitations.model.InvitationResult;
 import org.trustedanalytics.usermanagement.invitations.rest.InvitationsController;
 import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCodeService;
 import org.trustedanalytics.usermanagement.invitations.service.AccessInvitations;
@@ -34,17 +37,28 @@ import org.trustedanalytics.usermanagement.orgs.service.OrganizationsStorage;
 import org.trustedanalytics.usermanagement.orgs.service.SingleOrganizationStorage;
 import org.trustedanalytics.usermanagement.security.service.UserDetailsFinder;
 import org.trustedanalytics.usermanagement.users.BlacklistEmailValidator;
+import org.trustedanalytics.usermanagement.users.WrongUserRolesException;
+import org.trustedanalytics.usermanagement.users.model.UserRole;
 
+import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 import static junit.framework.Assert.assertEquals;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyCollection;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -139,4 +153,106 @@ public class InvitationsControllerTest {
         Invitation invitation = Invitation.of(invalidEmail);
         sut.addInvitation(invitation, null);
     }
+
+    @Test
+    public void testAddInvitations_mixedEmails_resultPerEmail() {
+        String existingEmail = "existing@example.com";
+        String pendingEmail = "pending@example.com";
+        doReturn(ADMIN_EMAIL).when(detailsFinder).findUserName(any(Authentication.class));
+        when(invitationsService.findExistingUsers(anyCollection())).thenReturn(Collections.singleton(existingEmail));
+        when(accessInvitationsService.getAccessInvitations(anyCollection()))
+                .thenReturn(Collections.singletonMap(pendingEmail, new AccessInvitations()));
+        when(invitationsService.sendInviteEmails(eq(Collections.singletonList(USER_EMAIL)), eq(ADMIN_EMAIL), any()))
+                .thenReturn(Collections.singletonMap(USER_EMAIL, "link"));
+
+        List<InvitationResult> results = sut.addInvitations(Arrays.asList(
+                BulkInvitation.of(" " + USER_EMAIL.toUpperCase() + " ", UserRole.USER),
+                BulkInvitation.of("invalidEmail", UserRole.USER),
+                BulkInvitation.of(existingEmail, UserRole.USER),
+                BulkInvitation.of(pendingEmail, UserRole.ADMIN),
+                BulkInvitation.of(USER_EMAIL, UserRole.USER)), null);
+
+        assertEquals(5, results.size());
+        assertEquals(InvitationErrorDescription.State.NEW, results.get(0).getState());
+        assertEquals(USER_EMAIL, results.get(0).getEmail());
+        assertEquals("link", results.get(0).getDetails());
+        assertEquals(InvitationErrorDescription.State.ERROR, results.get(1).getState());
+        assertEquals(InvitationErrorDescription.State.ERROR, results.get(2).getState());
+        assertEquals(InvitationErrorDescription.State.UPDATED, results.get(3).getState());
+        assertEquals(InvitationErrorDescription.State.ERROR, results.get(4).getState());
+
+        ArgumentCaptor<Consumer> captor = ArgumentCaptor.forClass(Consumer.class);
+        verify(accessInvitationsService).createOrUpdateInvitation(eq(pendingEmail), captor.capture());
+        AccessInvitations pending = new AccessInvitations();
+        captor.getValue().accept(pending);
+        assertEquals(UserRole.ADMIN, pending.getOrgAccessInvitations().get("sample-org-id"));
+        verify(accessInvitationsService).createOrUpdateInvitation(eq(USER_EMAIL), any());
+        verify(invitationsService, never()).userExists(anyString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testAddInvitations_oneEmailNotSent_errorForThatEmailOnly() {
+        String failingEmail = "failing@example.com";
+        doReturn(ADMIN_EMAIL).when(detailsFinder).findUserName(any(Authentication.class));
+        when(accessInvitationsService.getAccessInvitations(anyCollection())).thenReturn(Collections.emptyMap());
+        when(accessInvitationsService.createOrUpdateInvitation(anyString(), any()))
+                .thenReturn(AccessInvitationsService.CreateOrUpdateState.CREATED);
+        when(invitationsService.sendInviteEmails(anyCollection(), anyString(), any())).thenAnswer(invocation -> {
+            ((BiConsumer<String, RuntimeException>) invocation.getArguments()[2])
+                    .accept(failingEmail, new IllegalStateException("smtp down"));
+            return Collections.singletonMap(USER_EMAIL, "link");
+        });
+
+        List<InvitationResult> results = sut.addInvitations(Arrays.asList(
+                BulkInvitation.of(failingEmail, UserRole.USER),
+                BulkInvitation.of(USER_EMAIL, UserRole.USER)), null);
+
+        assertEquals(InvitationErrorDescription.State.ERROR, results.get(0).getState());
+        assertEquals(InvitationErrorDescription.State.NEW, results.get(1).getState());
+        InOrder inOrder = inOrder(accessInvitationsService, invitationsService);
+        inOrder.verify(accessInvitationsService).createOrUpdateInvitation(eq(USER_EMAIL), any());
+        inOrder.verify(invitationsService).sendInviteEmails(anyCollection(), anyString(), any());
+        verify(accessInvitationsService).redeemAccessInvitations(failingEmail);
+        verify(accessInvitationsService, never()).redeemAccessInvitations(USER_EMAIL);
+    }
+
+    @Test
+    public void testAddInvitations_allEmailsInvalid_nothingStored() {
+        List<InvitationResult> results = sut.addInvitations(
+                Collections.singletonList(BulkInvitation.of("invalidEmail", UserRole.USER)), null);
+
+        assertEquals(InvitationErrorDescription.State.ERROR, results.get(0).getState());
+        verify(accessInvitationsService, never()).createOrUpdateInvitation(anyString(), any());
+        verify(invitationsService, never()).sendInviteEmails(anyCollection(), anyString(), any());
+    }
+
+    @Test
+    public void testAddInvitationsFromCsv_headerAndDefaultRole_parsed() throws IOException {
+        doReturn(ADMIN_EMAIL).when(detailsFinder).findUserName(any(Authentication.class));
+        when(accessInvitationsService.getAccessInvitations(anyCollection())).thenReturn(Collections.emptyMap());
+        when(invitationsService.sendInviteEmails(anyCollection(), anyString(), any())).thenReturn(Collections.emptyMap());
+
+        sut.addInvitationsFromCsv(
+                new StringReader("email,role\n\n" + USER_EMAIL_UPPER_CASE + "\n" + ADMIN_EMAIL + ",admin\n"), null);
+
+        verify(invitationsService, times(1)).sendInviteEmails(
+                eq(Arrays.asList(USER_EMAIL_UPPER_CASE.toLowerCase(), ADMIN_EMAIL)), eq(ADMIN_EMAIL), any());
+    }
+
+    @Test(expected = WrongUserRolesException.class)
+    public void testAddInvitationsFromCsv_invalidRole_throwWrongUserRolesException() throws IOException {
+        sut.addInvitationsFromCsv(new StringReader(USER_EMAIL + ",owner\n"), null);
+    }
+
+    @Test
+    public void testAddInvitation_emailWithWhitespace_normalized() {
+        Invitation invitation = Invitation.of(" " + USER_EMAIL + " ");
+        doReturn(ADMIN_EMAIL).when(detailsFinder).findUserName(any(Authentication.class));
+        when(accessInvitationsService.getAccessInvitations(anyString())).thenReturn(Optional.empty());
+
+        sut.addInvitation(invitation, null);
+
+        verify(invitationsService).sendInviteEmail(eq(USER_EMAIL), eq(ADMIN_EMAIL));
+    }
 }
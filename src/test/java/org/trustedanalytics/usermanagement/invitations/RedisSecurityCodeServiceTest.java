@@ -16,29 +16,35 @@
 
 package org.trustedanalytics.usermanagement.invitations;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
-import org.springframework.data.redis.core.HashOperations;
 import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.JacksonJsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCode;
 import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCodeGenerationException;
 import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCodeService;
 import org.trustedanalytics.usermanagement.storage.RedisStore;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 
-import static java.util.stream.Collectors.toList;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.isEmptyOrNullString;
 import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
 import static org.mockito.Mockito.any;
-import static org.mockito.Mockito.anyString;
-import static org.mockito.Mockito.times;
-import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.anyListOf;
+import static org.mockito.Mockito.anyVararg;
+import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.when;
 
 
@@ -48,39 +54,45 @@ public class RedisSecurityCodeServiceTest {
     @Mock
     private RedisOperations<String, SecurityCode> redisOps;
 
-    @Mock
-    private HashOperations<String, String, SecurityCode> hashOps;
+    private final List<String> attemptedCodes = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        doReturn(new StringRedisSerializer()).when(redisOps).getHashKeySerializer();
+        doReturn(new JacksonJsonRedisSerializer<>(SecurityCode.class)).when(redisOps).getHashValueSerializer();
+    }
 
     @Test
     public void shouldRetryAndSucceed() {
-        when(redisOps.<String, SecurityCode>opsForHash()).thenReturn(hashOps);
-        when(hashOps.putIfAbsent(anyString(), anyString(), any(SecurityCode.class)))
-            .thenReturn(Boolean.FALSE)
-            .thenReturn(Boolean.FALSE)
-            .thenReturn(Boolean.TRUE);
-
+        putIfAbsentSucceedsOnAttempt(3);
 
         RedisStore<SecurityCode> redisStore = new RedisStore<>(redisOps, "test-key");
         SecurityCodeService service = new SecurityCodeService(redisStore);
         SecurityCode code = service.generateCode("test@example.com");
 
         assertThat(code.getCode(), not(isEmptyOrNullString()));
-        ArgumentCaptor<SecurityCode> codeCaptor = ArgumentCaptor.forClass(SecurityCode.class);
-        verify(hashOps, times(3)).putIfAbsent(anyString(), anyString(), codeCaptor.capture());
+        assertThat(attemptedCodes, hasSize(3));
 
         //check that all generated codes were different
-        assertThat("Expected 3 different values for generated codes",
-                new HashSet<>(codeCaptor.getAllValues().stream().map(x -> x.getCode()).collect(toList())), hasSize(3));
+        assertThat("Expected 3 different values for generated codes", new HashSet<>(attemptedCodes), hasSize(3));
     }
 
     @Test(expected = SecurityCodeGenerationException.class)
     public void shouldFailAfterRetries() {
-        when(redisOps.<String, SecurityCode>opsForHash()).thenReturn(hashOps);
-        when(hashOps.putIfAbsent(anyString(), anyString(), any(SecurityCode.class))).thenReturn(Boolean.FALSE);
+        putIfAbsentSucceedsOnAttempt(Integer.MAX_VALUE);
 
         RedisStore<SecurityCode> redisStore = new RedisStore<>(redisOps, "test-key");
-        SecurityCodeService service = new SecurityCodeService(redisStore);
+        SecurityCodeService service = new SecurityCodeService(redisStore, Duration.ofDays(1));
         service.generateCode("test@example.com");
     }
 
+    @SuppressWarnings("unchecked")
+    private void putIfAbsentSucceedsOnAttempt(int attempt) {
+        when(redisOps.execute(any(RedisScript.class), any(RedisSerializer.class), any(RedisSerializer.class),
+                anyListOf(String.class), anyVararg()))
+                .thenAnswer(invocation -> {
+                    attemptedCodes.add(new String((byte[]) invocation.getArguments()[4], StandardCharsets.UTF_8));
+                    return attemptedCodes.size() == attempt ? 1L : 0L;
+                });
+    }
 }
@@ -101,7 +101,7 @@ public class RegistrationsControllerTest {
 
     @Test(expected = InvalidSecurityCodeException.class)
     public void testAddUser_securityCodeInvalid_throwInvalidCode() {
-        doThrow(new InvalidSecurityCodeException("")).when(securityCodeService).verify(Matchers.anyString());
+        doThrow(new InvalidSecurityCodeException("")).when(securityCodeService).redeem(Matchers.anyString());
 
         sut.addUser(new Registration(), SECURITY_CODE);
     }
@@ -109,7 +109,7 @@ public class RegistrationsControllerTest {
     @Test(expected = TooShortPasswordException.class)
     public void testAddUser_passwordTooShort_throwTooShortPassword() {
         SecurityCode sc = new SecurityCode(USER_EMAIL, SECURITY_CODE);
-        doReturn(sc).when(securityCodeService).verify(Matchers.anyString());
+        doReturn(sc).when(securityCodeService).redeem(Matchers.anyString());
         Registration registration = new Registration();
         registration.setPassword("123");
 
@@ -119,7 +119,7 @@ public class RegistrationsControllerTest {
     @Test(expected = EmptyPasswordException.class)
     public void testAddUser_passwordEmpty_throwEmptyPassword() {
         SecurityCode sc = new SecurityCode(USER_EMAIL, SECURITY_CODE);
-        doReturn(sc).when(securityCodeService).verify(Matchers.anyString());
+        doReturn(sc).when(securityCodeService).redeem(Matchers.anyString());
         Registration registration = new Registration();
         registration.setPassword("");
 
@@ -129,7 +129,7 @@ public class RegistrationsControllerTest {
     @Test(expected = UserExistsException.class)
     public void testAddUser_createUserAlreadyExists_throwUserExistsException() {
         SecurityCode sc = new SecurityCode(USER_EMAIL, SECURITY_CODE);
-        doReturn(sc).when(securityCodeService).verify(Matchers.anyString());
+        doReturn(sc).when(securityCodeService).redeem(Matchers.anyString());
         Registration registration = new Registration();
         registration.setPassword("123456");
 
@@ -139,10 +139,28 @@ public class RegistrationsControllerTest {
         sut.addUser(registration, SECURITY_CODE);
     }
 
+    @Test
+    public void testAddUser_createUserFailed_restoreCode() {
+        SecurityCode sc = new SecurityCode(USER_EMAIL, SECURITY_CODE);
+        doReturn(sc).when(securityCodeService).redeem(Matchers.anyString());
+        Registration registration = new Registration();
+        registration.setPassword("123456");
+        doThrow(new UserExistsException("")).when(invitationsService).createUser(
+                Matchers.anyString(), Matchers.anyString(), Matchers.anyString());
+
+        try {
+            sut.addUser(registration, SECURITY_CODE);
+            Assert.fail("Expected UserExistsException");
+        } catch (UserExistsException e) {
+            Mockito.verify(securityCodeService).restore(sc);
+            Mockito.verify(accessInvitationsService, Mockito.never()).redeemAccessInvitations(Matchers.anyString());
+        }
+    }
+
     @Test(expected = OrgExistsException.class)
     public void testAddUser_createUserAlreadyExistsNoOrg_throwOrgExistsException() {
         SecurityCode sc = new SecurityCode(USER_EMAIL, SECURITY_CODE);
-        doReturn(sc).when(securityCodeService).verify(Matchers.anyString());
+        doReturn(sc).when(securityCodeService).redeem(Matchers.anyString());
         Registration registration = new Registration();
         registration.setPassword("123456");
         doThrow(new OrgExistsException("")).when(invitationsService).createUser(
@@ -154,7 +172,7 @@ public class RegistrationsControllerTest {
     @Test(expected = HttpClientErrorException.class)
     public void testAddUser_createUserHttpConnectionError_throwHttpError() {
         SecurityCode sc = new SecurityCode(USER_EMAIL, SECURITY_CODE);
-        doReturn(sc).when(securityCodeService).verify(Matchers.anyString());
+        doReturn(sc).when(securityCodeService).redeem(Matchers.anyString());
         Registration registration = new Registration();
         registration.setPassword("123456");
         doThrow(new HttpClientErrorException(HttpStatus.INTERNAL_SERVER_ERROR)).when(invitationsService).createUser(
@@ -166,7 +184,7 @@ public class RegistrationsControllerTest {
     @Test(expected = InvalidOrganizationNameException.class)
     public void testAddUser_createUserNoOrgHttpConnectionError_throwHttpError() {
         SecurityCode sc = new SecurityCode(USER_EMAIL, SECURITY_CODE);
-        doReturn(sc).when(securityCodeService).verify(Matchers.anyString());
+        doReturn(sc).when(securityCodeService).redeem(Matchers.anyString());
         Registration registration = new Registration();
         registration.setPassword("123456");
         doThrow(new InvalidOrganizationNameException("")).when(invitationsService).createUser(
@@ -178,7 +196,7 @@ public class RegistrationsControllerTest {
     @Test()
     public void testAddUser_allOk_useCode() {
         SecurityCode sc = new SecurityCode(USER_EMAIL, SECURITY_CODE);
-        doReturn(sc).when(securityCodeService).verify(Matchers.anyString());
+        doReturn(sc).when(securityCodeService).redeem(Matchers.anyString());
         Registration registration = new Registration();
         String userPassword = "123456";
         String userGuid = "test-user-id";
@@ -194,7 +212,8 @@ public class RegistrationsControllerTest {
 
         Registration registeredUser = sut.addUser(registration, SECURITY_CODE);
 
-        Mockito.verify(securityCodeService).redeem(sc);
+        Mockito.verify(securityCodeService).redeem(SECURITY_CODE);
+        Mockito.verify(securityCodeService, Mockito.never()).restore(Matchers.any());
         Assert.assertTrue(registeredUser.getPassword().equals(userPassword));
         assertThat(registeredUser.getUserGuid(), equalTo(userGuid));
     }
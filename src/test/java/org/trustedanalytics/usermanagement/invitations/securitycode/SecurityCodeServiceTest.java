@@ -0,0 +1,82 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.invitations.securitycode;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.trustedanalytics.usermanagement.storage.KeyValueStore;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SecurityCodeServiceTest {
+
+    private static final Duration TTL = Duration.ofDays(1);
+
+    @Mock
+    private KeyValueStore<SecurityCode> store;
+
+    @Mock
+    private Clock clock;
+
+    private SecurityCodeService sut;
+
+    @Before
+    public void setUp() {
+        when(clock.millis()).thenReturn(1000L);
+        when(store.putIfAbsent(anyString(), any(SecurityCode.class), any(Duration.class))).thenReturn(true);
+        sut = new SecurityCodeService(store, TTL, clock);
+    }
+
+    @Test
+    public void generateCode_withTtl_deadlineRecorded() {
+        SecurityCode code = sut.generateCode("email@example.com");
+
+        assertEquals(1000L + TTL.toMillis(), code.getExpiresAt());
+    }
+
+    @Test
+    public void restore_partOfTtlElapsed_restoredWithRemainingTtl() {
+        SecurityCode code = sut.generateCode("email@example.com");
+        when(clock.millis()).thenReturn(1000L + Duration.ofHours(20).toMillis());
+
+        sut.restore(code);
+
+        verify(store).putIfAbsent(code.getCode(), code, Duration.ofHours(4));
+    }
+
+    @Test
+    public void restore_ttlElapsed_notRestored() {
+        SecurityCode code = sut.generateCode("email@example.com");
+        when(clock.millis()).thenReturn(1000L + TTL.toMillis());
+
+        sut.restore(code);
+
+        // only the put made by generateCode
+        verify(store, times(1)).putIfAbsent(anyString(), any(SecurityCode.class), any(Duration.class));
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.invitations.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.trustedanalytics.usermanagement.metrics.OutboxMetrics;
+import org.trustedanalytics.usermanagement.storage.InMemoryStore;
+import org.trustedanalytics.usermanagement.storage.KeyValueStore;
+
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class EmailOutboxTest {
+
+    private static final OutboxMetrics METRICS = new OutboxMetrics("email_outbox_test");
+
+    @Mock
+    private MessageService delivery;
+
+    @Mock
+    private Clock clock;
+
+    private KeyValueStore<OutboxMessage> queue;
+    private KeyValueStore<OutboxMessage> deadLetters;
+    private EmailOutbox sut;
+
+    @Before
+    public void setUp() {
+        queue = new InMemoryStore<>();
+        deadLetters = new InMemoryStore<>();
+        when(clock.millis()).thenReturn(1000L);
+        sut = new EmailOutbox(queue, deadLetters, delivery, METRICS,
+                new EmailOutbox.Settings(1, 3, Duration.ofSeconds(30), Duration.ofMinutes(10), 5000), clock);
+    }
+
+    @Test
+    public void sendMimeMessage_messageQueuedWithoutDelivering() {
+        sut.sendMimeMessage("user@example.com", "subject", "content");
+
+        assertEquals(1, queue.size());
+        verify(delivery, never()).sendMimeMessage(any(), any(), any());
+    }
+
+    @Test
+    public void deliver_deliverySucceeds_messageRemoved() {
+        sut.sendMimeMessage("user@example.com", "subject", "content");
+
+        sut.deliver(queuedId());
+
+        verify(delivery).sendMimeMessage("user@example.com", "subject", "content");
+        assertEquals(0, queue.size());
+    }
+
+    @Test
+    public void deliver_deliveryFails_retriedAfterBackoff() {
+        doThrow(new IllegalStateException("smtp down")).when(delivery).sendMimeMessage(any(), any(), any());
+        sut.sendMimeMessage("user@example.com", "subject", "content");
+        String id = queuedId();
+
+        sut.deliver(id);
+        sut.deliver(id);
+
+        OutboxMessage message = queue.get(id);
+        assertEquals(1, message.getAttempts());
+        assertEquals(31000L, message.getNextAttemptAt());
+        assertEquals("smtp down", message.getLastError());
+        verify(delivery, times(1)).sendMimeMessage(any(), any(), any());
+
+        when(clock.millis()).thenReturn(31000L);
+        sut.deliver(id);
+
+        assertEquals(2, queue.get(id).getAttempts());
+        assertEquals(91000L, queue.get(id).getNextAttemptAt());
+    }
+
+    @Test
+    public void deliver_lastAttemptFails_movedToDeadLetters() {
+        doThrow(new IllegalStateException("smtp down")).when(delivery).sendMimeMessage(any(), any(), any());
+        sut.sendMimeMessage("user@example.com", "subject", "content");
+        String id = queuedId();
+
+        for (long now : new long[] {1000L, 31000L, 91000L}) {
+            when(clock.millis()).thenReturn(now);
+            sut.deliver(id);
+        }
+
+        assertEquals(0, queue.size());
+        assertEquals(3, deadLetters.get(id).getAttempts());
+        verify(delivery, times(3)).sendMimeMessage(any(), any(), any());
+    }
+
+    @Test
+    public void deliver_messageLeasedByAnotherWorker_notSent() {
+        sut.sendMimeMessage("user@example.com", "subject", "content");
+        String id = queuedId();
+        queue.put(id, queue.get(id).leased("other-replica", 1000L + Duration.ofMinutes(5).toMillis()));
+
+        sut.deliver(id);
+
+        verify(delivery, never()).sendMimeMessage(any(), any(), any());
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    public void deliver_leaseTakenOverDuringFailedDelivery_messageNotOverwritten() {
+        sut.sendMimeMessage("user@example.com", "subject", "content");
+        String id = queuedId();
+        doAnswer(invocation -> {
+            queue.put(id, queue.get(id).leased("other-replica", 1000L + Duration.ofMinutes(5).toMillis()));
+            throw new IllegalStateException("smtp down");
+        }).when(delivery).sendMimeMessage(any(), any(), any());
+
+        sut.deliver(id);
+
+        OutboxMessage message = queue.get(id);
+        assertEquals("other-replica", message.getLeaseOwner());
+        assertEquals(0, message.getAttempts());
+        assertEquals(0, deadLetters.size());
+    }
+
+    @Test
+    public void deliver_messageNotDue_storeNotWritten() {
+        KeyValueStore<OutboxMessage> store = mock(KeyValueStore.class);
+        OutboxMessage message = new OutboxMessage("id", "user@example.com", "subject", "content", 1000L)
+                .leased("other-replica", 1000L + Duration.ofMinutes(5).toMillis());
+        when(store.get("id")).thenReturn(message);
+        sut = new EmailOutbox(store, deadLetters, delivery, METRICS,
+                new EmailOutbox.Settings(1, 3, Duration.ofSeconds(30), Duration.ofMinutes(10), 5000), clock);
+
+        sut.deliver("id");
+
+        verify(store, never()).compute(any(), any(), any());
+        verify(delivery, never()).sendMimeMessage(any(), any(), any());
+    }
+
+    private String queuedId() {
+        return queue.values().iterator().next().getId();
+    }
+}
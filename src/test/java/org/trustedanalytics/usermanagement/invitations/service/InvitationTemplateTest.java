@@ -0,0 +1,84 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.invitations.service;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Before;
+import org.junit.Test;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring4.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class InvitationTemplateTest {
+
+    private static final Map<String, String> CONSTANTS = ImmutableMap.of("serviceName", "Trusted Analytics");
+
+    private SpringTemplateEngine templateEngine;
+
+    @Before
+    public void setUp() {
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setTemplateMode("HTML5");
+        resolver.setCharacterEncoding("UTF-8");
+        templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+    }
+
+    @Test
+    public void render_invite_sameAsTemplateEngine() {
+        InvitationTemplate sut = new InvitationTemplate(templateEngine, "invite", CONSTANTS,
+                "email", "currentUser", "accountsUrl");
+
+        String html = sut.render("user@example.com", "<admin> & co", "https://console.example.com/new-account?code=a&b");
+
+        assertEquals(process("invite", ImmutableMap.of(
+                "email", "user@example.com",
+                "currentUser", "<admin> & co",
+                "accountsUrl", "https://console.example.com/new-account?code=a&b")), html);
+    }
+
+    @Test
+    public void render_inviteOrg_sameAsTemplateEngine() {
+        InvitationTemplate sut = new InvitationTemplate(templateEngine, "invite_org", CONSTANTS,
+                "username", "consoleUrl", "resetPasswordUrl");
+
+        String html = sut.render("user@example.com", "https://console.example.com", "https://login.example.com/reset");
+
+        assertEquals(process("invite_org", ImmutableMap.of(
+                "username", "user@example.com",
+                "consoleUrl", "https://console.example.com",
+                "resetPasswordUrl", "https://login.example.com/reset")), html);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void render_missingValue_throwIllegalArgumentException() {
+        new InvitationTemplate(templateEngine, "invite", CONSTANTS, "email", "currentUser", "accountsUrl")
+                .render("user@example.com");
+    }
+
+    private String process(String templateName, Map<String, String> variables) {
+        Context ctx = new Context();
+        CONSTANTS.forEach(ctx::setVariable);
+        variables.forEach(ctx::setVariable);
+        return templateEngine.process(templateName, ctx);
+    }
+}
@@ -0,0 +1,210 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.invitations.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.mail.MailSendException;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.internet.InternetAddress;
+import javax.mail.internet.MimeMessage;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class PooledJavaMailSenderTest {
+
+    @Mock
+    private Clock clock;
+
+    private Deque<Transport> transports;
+    private TestSender sut;
+
+    @Before
+    public void setUp() {
+        when(clock.millis()).thenReturn(1000L);
+        transports = new ArrayDeque<>(Arrays.asList(connectedTransport(), connectedTransport()));
+        sut = new TestSender(2);
+    }
+
+    @Test
+    public void send_twoCalls_connectionReused() throws MessagingException {
+        Transport transport = transports.peek();
+
+        sut.send(message());
+        sut.send(message());
+
+        assertEquals(1, sut.connects);
+        verify(transport, times(2)).sendMessage(any(Message.class), any(Address[].class));
+    }
+
+    @Test
+    public void send_batch_sentThroughOneConnection() throws MessagingException {
+        Transport transport = transports.peek();
+
+        sut.send(message(), message(), message());
+
+        assertEquals(1, sut.connects);
+        verify(transport, times(3)).sendMessage(any(Message.class), any(Address[].class));
+    }
+
+    @Test
+    public void send_connectionDropped_reconnected() {
+        Transport dropped = transports.peek();
+        sut.send(message());
+        when(dropped.isConnected()).thenReturn(false);
+
+        sut.send(message());
+
+        assertEquals(2, sut.connects);
+    }
+
+    @Test
+    public void send_connectionIdleTooLong_reconnected() throws MessagingException {
+        Transport idle = transports.peek();
+        sut.send(message());
+        when(clock.millis()).thenReturn(1000L + Duration.ofMinutes(2).toMillis());
+
+        sut.send(message());
+
+        assertEquals(2, sut.connects);
+        verify(idle).close();
+    }
+
+    @Test
+    public void send_messageLimitReached_connectionClosed() throws MessagingException {
+        Transport transport = transports.peek();
+
+        sut.send(message(), message());
+
+        verify(transport).close();
+    }
+
+    @Test(expected = MailSendException.class)
+    public void send_messageRejected_failureReported() throws MessagingException {
+        Transport transport = transports.peek();
+        doThrow(new MessagingException("rejected")).when(transport).sendMessage(any(Message.class), any(Address[].class));
+
+        sut.send(message());
+    }
+
+    @Test
+    public void send_messageRejected_connectionNotReused() throws MessagingException {
+        Transport transport = transports.peek();
+        doThrow(new MessagingException("rejected")).when(transport).sendMessage(any(Message.class), any(Address[].class));
+        try {
+            sut.send(message());
+            fail();
+        } catch (MailSendException ex) {
+            // expected
+        }
+
+        sut.send(message());
+
+        assertEquals(2, sut.connects);
+        verify(transport).close();
+    }
+
+    @Test
+    public void send_unexpectedFailure_connectionNotReused() throws MessagingException {
+        Transport transport = transports.peek();
+        doThrow(new IllegalStateException("broken")).when(transport).sendMessage(any(Message.class), any(Address[].class));
+        try {
+            sut.send(message());
+            fail();
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+
+        sut.send(message());
+
+        assertEquals(2, sut.connects);
+        verify(transport).close();
+    }
+
+    @Test
+    public void close_idleConnectionsClosed() throws MessagingException {
+        Transport transport = transports.peek();
+        sut.send(message());
+
+        sut.close();
+
+        verify(transport).close();
+    }
+
+    @Test
+    public void send_afterClose_connectionNotPooled() throws MessagingException {
+        Transport transport = transports.peek();
+        sut.close();
+
+        sut.send(message());
+
+        verify(transport).close();
+    }
+
+    private Transport connectedTransport() {
+        Transport transport = mock(Transport.class);
+        when(transport.isConnected()).thenReturn(true);
+        return transport;
+    }
+
+    private MimeMessage message() {
+        try {
+            MimeMessage message = new MimeMessage(Session.getInstance(new Properties()));
+            message.setRecipient(Message.RecipientType.TO, new InternetAddress("user@example.com"));
+            message.setSubject("subject");
+            message.setText("content");
+            return message;
+        } catch (MessagingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private class TestSender extends PooledJavaMailSender {
+        private int connects;
+
+        TestSender(int maxMessagesPerConnection) {
+            super(1, Duration.ofMinutes(1), maxMessagesPerConnection, clock);
+        }
+
+        @Override
+        protected Transport connectTransport() {
+            connects++;
+            return transports.poll();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.metrics;
+
+import io.prometheus.client.CollectorRegistry;
+import org.junit.Test;
+import org.trustedanalytics.usermanagement.invitations.service.MessageService;
+import org.trustedanalytics.usermanagement.users.rest.UaaScimOperations;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class DependencyMetricsTest {
+
+    private static final DependencyMetrics METRICS = new DependencyMetrics("dependency_metrics_test");
+
+    @Test
+    public void instrument_callSucceeds_successCountedAndDelegated() {
+        MessageService target = mock(MessageService.class);
+        MessageService sut = METRICS.instrument(MessageService.class, target, "smtp-ok");
+
+        sut.sendMimeMessage("user@example.com", "subject", "content");
+
+        verify(target).sendMimeMessage("user@example.com", "subject", "content");
+        assertEquals(1.0, sample("dependency_metrics_test_dependency_calls_total",
+                new String[] {"dependency", "operation", "outcome"},
+                new String[] {"smtp-ok", "sendMimeMessage", "success"}), 0.0);
+        assertEquals(1.0, sample("dependency_metrics_test_dependency_duration_seconds_count",
+                new String[] {"dependency", "operation"}, new String[] {"smtp-ok", "sendMimeMessage"}), 0.0);
+        assertEquals(0.0, sample("dependency_metrics_test_dependency_calls_in_flight",
+                new String[] {"dependency"}, new String[] {"smtp-ok"}), 0.0);
+    }
+
+    @Test
+    public void instrument_callFails_originalExceptionRethrownAndErrorCounted() {
+        MessageService target = mock(MessageService.class);
+        IllegalStateException failure = new IllegalStateException("smtp down");
+        doThrow(failure).when(target).sendMimeMessage("user@example.com", "subject", "content");
+        MessageService sut = METRICS.instrument(MessageService.class, target, "smtp-failing");
+
+        try {
+            sut.sendMimeMessage("user@example.com", "subject", "content");
+            fail("Exception of the target should be rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals(failure, e);
+        }
+
+        assertEquals(1.0, sample("dependency_metrics_test_dependency_calls_total",
+                new String[] {"dependency", "operation", "outcome"},
+                new String[] {"smtp-failing", "sendMimeMessage", "error"}), 0.0);
+    }
+
+    @Test
+    public void instrument_scimCall_recordedUnderUaa() {
+        UaaScimOperations target = mock(UaaScimOperations.class);
+        when(target.countUsers()).thenReturn(42);
+        UaaScimOperations sut = METRICS.instrument(UaaScimOperations.class, target, "uaa-scim");
+
+        assertEquals(42, sut.countUsers());
+
+        assertEquals(1.0, sample("dependency_metrics_test_dependency_calls_total",
+                new String[] {"dependency", "operation", "outcome"},
+                new String[] {"uaa-scim", "countUsers", "success"}), 0.0);
+    }
+
+    @Test
+    public void time_callFails_exceptionRethrownAndErrorCounted() {
+        IllegalStateException failure = new IllegalStateException("uaa down");
+
+        try {
+            METRICS.time("uaa-token", "getClientCredentialsToken", () -> {
+                throw failure;
+            });
+            fail("Exception of the call should be rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals(failure, e);
+        }
+
+        assertEquals(1.0, sample("dependency_metrics_test_dependency_calls_total",
+                new String[] {"dependency", "operation", "outcome"},
+                new String[] {"uaa-token", "getClientCredentialsToken", "error"}), 0.0);
+    }
+
+    private static double sample(String name, String[] labelNames, String[] labelValues) {
+        return CollectorRegistry.defaultRegistry.getSampleValue(name, labelNames, labelValues);
+    }
+}
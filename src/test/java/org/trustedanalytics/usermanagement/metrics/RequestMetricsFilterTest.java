@@ -0,0 +1,67 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.metrics;
+
+import io.prometheus.client.CollectorRegistry;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class RequestMetricsFilterTest {
+
+    private static final RequestMetricsFilter FILTER = new RequestMetricsFilter("request_metrics_test");
+
+    @Test
+    public void doFilter_handledRequest_recordedUnderRouteTemplate() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/rest/orgs/some-org/users");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> {
+            req.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/rest/orgs/{org}/users");
+            res.getWriter().write("[]");
+        };
+
+        FILTER.doFilter(request, response, chain);
+
+        assertEquals("[]", response.getContentAsString());
+        assertEquals(1.0, sample("request_metrics_test_http_requests_total",
+                new String[] {"method", "route", "status"}, new String[] {"GET", "/rest/orgs/{org}/users", "2xx"}), 0.0);
+        assertEquals(2.0, sample("request_metrics_test_http_response_size_bytes_sum",
+                new String[] {"method", "route"}, new String[] {"GET", "/rest/orgs/{org}/users"}), 0.0);
+    }
+
+    @Test
+    public void doFilter_noHandler_recordedAsUnmatched() throws ServletException, IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("DELETE", "/no/such/path");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        FilterChain chain = (req, res) -> response.setStatus(404);
+
+        FILTER.doFilter(request, response, chain);
+
+        assertEquals(1.0, sample("request_metrics_test_http_requests_total",
+                new String[] {"method", "route", "status"}, new String[] {"DELETE", "unmatched", "4xx"}), 0.0);
+    }
+
+    private static double sample(String name, String[] labelNames, String[] labelValues) {
+        return CollectorRegistry.defaultRegistry.getSampleValue(name, labelNames, labelValues);
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.security;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Date;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClientCredentialsTokenCacheTest {
+
+    private static final long HOUR = Duration.ofHours(1).toMillis();
+
+    @Mock
+    private Supplier<OAuth2AccessToken> tokenSource;
+
+    @Mock
+    private Clock clock;
+
+    private ClientCredentialsTokenCache sut;
+
+    @Before
+    public void setUp() {
+        when(clock.millis()).thenReturn(0L);
+        sut = new ClientCredentialsTokenCache(tokenSource, Duration.ofMinutes(1), clock);
+    }
+
+    @After
+    public void tearDown() {
+        sut.close();
+    }
+
+    @Test
+    public void getToken_tokenValid_obtainTokenOnce() {
+        when(tokenSource.get()).thenReturn(token("first", HOUR));
+
+        assertEquals("first", sut.getToken());
+        assertEquals("first", sut.getToken());
+
+        verify(tokenSource).get();
+    }
+
+    @Test
+    public void getToken_tokenExpired_obtainNewToken() {
+        when(tokenSource.get()).thenReturn(token("first", HOUR), token("second", 2 * HOUR));
+        sut.getToken();
+
+        when(clock.millis()).thenReturn(HOUR);
+
+        assertEquals("second", sut.getToken());
+        verify(tokenSource, times(2)).get();
+    }
+
+    private static OAuth2AccessToken token(String value, long expiresAt) {
+        DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken(value);
+        token.setExpiration(new Date(expiresAt));
+        return token;
+    }
+}
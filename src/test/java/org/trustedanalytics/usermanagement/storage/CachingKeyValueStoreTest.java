@@ -0,0 +1,91 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCode;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingKeyValueStoreTest {
+
+    private static final SecurityCode CODE = new SecurityCode("email@example.com", "code");
+
+    @Mock
+    private KeyValueStore<SecurityCode> delegate;
+
+    private final List<String> published = new ArrayList<>();
+
+    private CachingKeyValueStore<SecurityCode> sut;
+
+    @Before
+    public void setUp() {
+        sut = new CachingKeyValueStore<>(delegate, 100, Duration.ofMinutes(1), key -> "digest-" + key, published::add);
+        when(delegate.get("code")).thenReturn(CODE);
+    }
+
+    @Test
+    public void get_readTwice_delegateCalledOnce() {
+        assertSame(CODE, sut.get("code"));
+        assertSame(CODE, sut.get("code"));
+
+        verify(delegate).get("code");
+    }
+
+    @Test
+    public void remove_entryCached_invalidateLocallyAndPublishDigest() {
+        sut.get("code");
+        sut.remove("code");
+        sut.get("code");
+
+        verify(delegate, times(2)).get("code");
+        assertEquals(1, published.size());
+        assertEquals("digest-code", published.get(0));
+    }
+
+    @Test
+    public void onInvalidation_entryCached_readFromDelegateAgain() {
+        sut.get("code");
+        sut.onInvalidation("digest-code");
+        sut.get("code");
+
+        verify(delegate, times(2)).get("code");
+    }
+
+    @Test
+    public void purgeExpired_entriesPurged_invalidateAll() {
+        when(delegate.purgeExpired()).thenReturn(1);
+        sut.get("code");
+        sut.purgeExpired();
+        sut.get("code");
+
+        verify(delegate, times(2)).get("code");
+        assertEquals(CachingKeyValueStore.INVALIDATE_ALL, published.get(0));
+    }
+}
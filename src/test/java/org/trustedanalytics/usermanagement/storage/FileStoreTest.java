@@ -0,0 +1,212 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCode;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FileStoreTest {
+
+    private static final String EMAIL = "email@example.com";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+
+    private Clock clock;
+
+    private FileStore<SecurityCode> sut;
+
+    @Before
+    public void setUp() throws IOException {
+        file = folder.getRoot().toPath().resolve("security-codes.log");
+        clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        sut = open();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        sut.close();
+    }
+
+    @Test
+    public void get_storeReopened_returnPersistedValue() throws IOException {
+        sut.put("code", new SecurityCode(EMAIL, "code"));
+        sut.put("other", new SecurityCode("other@example.com", "other"));
+        sut.remove("other");
+
+        reopen();
+
+        assertEquals(EMAIL, sut.get("code").getEmail());
+        assertEquals("code", sut.findByIndex(EMAIL).get().getCode());
+        assertFalse(sut.hasKey("other"));
+    }
+
+    @Test
+    public void get_lastRecordTorn_discardOnlyLastRecord() throws IOException {
+        sut.put("code", new SecurityCode(EMAIL, "code"));
+        sut.put("other", new SecurityCode("other@example.com", "other"));
+        sut.close();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 3);
+        }
+
+        sut = open();
+        sut.put("third", new SecurityCode("third@example.com", "third"));
+        reopen();
+
+        assertTrue(sut.hasKey("code"));
+        assertFalse(sut.hasKey("other"));
+        assertTrue(sut.hasKey("third"));
+    }
+
+    @Test
+    public void get_lastRecordCorrupted_discardOnlyLastRecord() throws IOException {
+        sut.put("code", new SecurityCode(EMAIL, "code"));
+        sut.put("other", new SecurityCode("other@example.com", "other"));
+        sut.close();
+        flipByte(Files.size(file) - 1);
+
+        sut = open();
+
+        assertTrue(sut.hasKey("code"));
+        assertFalse(sut.hasKey("other"));
+    }
+
+    @Test
+    public void get_zeroFilledTail_keepRecordsAndDiscardTail() throws IOException {
+        sut.put("code", new SecurityCode(EMAIL, "code"));
+        sut.close();
+        long validLength = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.allocate(64));
+        }
+
+        sut = open();
+
+        assertTrue(sut.hasKey("code"));
+        assertEquals(validLength, Files.size(file));
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void open_invalidLengthFollowedByData_throwException() throws IOException {
+        sut.put("code", new SecurityCode(EMAIL, "code"));
+        sut.close();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            ByteBuffer tail = ByteBuffer.allocate(16);
+            tail.putInt(12, 1);
+            channel.write(tail);
+        }
+
+        sut = open();
+    }
+
+    @Test(expected = UncheckedIOException.class)
+    public void open_corruptedRecordFollowedByOthers_throwException() throws IOException {
+        sut.put("code", new SecurityCode(EMAIL, "code"));
+        sut.put("other", new SecurityCode("other@example.com", "other"));
+        sut.close();
+        flipByte(10);
+
+        sut = open();
+    }
+
+    @Test
+    public void put_logNotWritable_valueNotVisible() throws IOException {
+        sut.close();
+
+        try {
+            sut.put("code", new SecurityCode(EMAIL, "code"));
+            fail();
+        } catch (UncheckedIOException e) {
+            assertFalse(sut.hasKey("code"));
+        }
+    }
+
+    @Test
+    public void get_ttlElapsedBeforeReopen_returnNull() throws IOException {
+        sut.put("code", new SecurityCode(EMAIL, "code"), Duration.ofMinutes(10));
+
+        when(clock.millis()).thenReturn(Duration.ofMinutes(10).toMillis());
+        reopen();
+
+        assertNull(sut.get("code"));
+    }
+
+    @Test
+    public void compact_manyUpdates_keepOnlyLiveEntries() throws IOException {
+        for (int i = 0; i < 100; i++) {
+            sut.put("code", new SecurityCode(EMAIL, "code"));
+            sut.put("removed" + i, new SecurityCode("removed@example.com", "removed" + i));
+            sut.remove("removed" + i);
+        }
+        long sizeBefore = Files.size(file);
+
+        sut.compact();
+        sut.put("other", new SecurityCode("other@example.com", "other"));
+        reopen();
+
+        assertTrue(Files.size(file) < sizeBefore);
+        assertEquals(2, sut.size());
+        assertEquals(EMAIL, sut.get("code").getEmail());
+    }
+
+    private void flipByte(long position) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(1);
+            channel.read(buffer, position);
+            buffer.put(0, (byte) (buffer.get(0) ^ 0xff));
+            buffer.rewind();
+            channel.write(buffer, position);
+        }
+    }
+
+    private void reopen() throws IOException {
+        sut.close();
+        sut = open();
+    }
+
+    private FileStore<SecurityCode> open() {
+        return new FileStore<>(file, new StringRedisSerializer(), new Jackson2JsonRedisSerializer<>(SecurityCode.class),
+                SecurityCode::getEmail, clock);
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.storage;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.trustedanalytics.usermanagement.invitations.securitycode.SecurityCode;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class InMemoryStoreTest {
+
+    private static final String EMAIL = "email@example.com";
+    private static final Duration TTL = Duration.ofMinutes(10);
+
+    private InMemoryStore<SecurityCode> sut;
+
+    @Before
+    public void setUp() {
+        sut = new InMemoryStore<>(SecurityCode::getEmail);
+    }
+
+    @Test
+    public void findByIndex_codeStored_returnCode() {
+        SecurityCode code = new SecurityCode(EMAIL, "code");
+        sut.putIfAbsent(code.getCode(), code);
+
+        assertEquals(Optional.of(code), sut.findByIndex(EMAIL));
+    }
+
+    @Test
+    public void findByIndex_codeRemoved_returnEmpty() {
+        SecurityCode code = new SecurityCode(EMAIL, "code");
+        sut.put(code.getCode(), code);
+        sut.remove(code.getCode());
+
+        assertFalse(sut.findByIndex(EMAIL).isPresent());
+    }
+
+    @Test
+    public void findByIndex_olderCodeForSameEmailRemoved_keepNewerCode() {
+        SecurityCode older = new SecurityCode(EMAIL, "older");
+        SecurityCode newer = new SecurityCode(EMAIL, "newer");
+        sut.put(older.getCode(), older);
+        sut.put(newer.getCode(), newer);
+        sut.remove(older.getCode());
+
+        assertEquals(Optional.of(newer), sut.findByIndex(EMAIL));
+    }
+
+    @Test
+    public void findByIndex_valueReplaced_oldIndexKeyRemoved() {
+        sut.put("code", new SecurityCode(EMAIL, "code"));
+        sut.put("code", new SecurityCode("other@example.com", "code"));
+
+        assertFalse(sut.findByIndex(EMAIL).isPresent());
+        assertTrue(sut.findByIndex("other@example.com").isPresent());
+    }
+
+    @Test(expected = StoreCapacityExceededException.class)
+    public void putIfAbsent_capacityReached_throwCapacityExceeded() {
+        sut = new InMemoryStore<>(SecurityCode::getEmail, 1);
+        sut.putIfAbsent("first", new SecurityCode(EMAIL, "first"));
+        sut.putIfAbsent("second", new SecurityCode("other@example.com", "second"));
+    }
+
+    @Test
+    public void put_capacityReached_replaceExistingKey() {
+        sut = new InMemoryStore<>(SecurityCode::getEmail, 1);
+        sut.put("code", new SecurityCode(EMAIL, "code"));
+        sut.remove("code");
+        sut.put("code", new SecurityCode(EMAIL, "code"));
+        sut.put("code", new SecurityCode("other@example.com", "code"));
+
+        assertEquals(1, sut.values().size());
+    }
+
+    @Test
+    public void putIfAbsent_concurrentWritersSameKey_onlyOneSucceeds() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Callable<Boolean>> writers = IntStream.range(0, 64)
+                    .mapToObj(i -> (Callable<Boolean>) () ->
+                            sut.putIfAbsent("code", new SecurityCode("user" + i + "@example.com", "code")))
+                    .collect(Collectors.toList());
+
+            long succeeded = 0;
+            for (Future<Boolean> result : executor.invokeAll(writers)) {
+                succeeded += result.get() ? 1 : 0;
+            }
+
+            assertEquals(1, succeeded);
+            assertTrue(sut.findByIndex(sut.get("code").getEmail()).isPresent());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void findByIndex_storeNotIndexed_throwUnsupportedOperation() {
+        new InMemoryStore<SecurityCode>().findByIndex(EMAIL);
+    }
+
+    @Test
+    public void get_ttlElapsed_returnNull() {
+        Clock clock = clockAt(0);
+        sut = new InMemoryStore<>(SecurityCode::getEmail, 0, clock);
+        sut.put("code", new SecurityCode(EMAIL, "code"), TTL);
+
+        when(clock.millis()).thenReturn(TTL.toMillis());
+
+        assertNull(sut.get("code"));
+        assertFalse(sut.hasKey("code"));
+        assertFalse(sut.findByIndex(EMAIL).isPresent());
+    }
+
+    @Test
+    public void putIfAbsent_previousEntryExpired_replaceEntry() {
+        Clock clock = clockAt(0);
+        sut = new InMemoryStore<>(SecurityCode::getEmail, 1, clock);
+        sut.putIfAbsent("code", new SecurityCode(EMAIL, "code"), TTL);
+
+        when(clock.millis()).thenReturn(TTL.toMillis());
+
+        assertTrue(sut.putIfAbsent("code", new SecurityCode("other@example.com", "code")));
+        assertEquals("other@example.com", sut.get("code").getEmail());
+    }
+
+    @Test
+    public void put_withoutTtl_clearPreviousTtl() {
+        Clock clock = clockAt(0);
+        sut = new InMemoryStore<>(SecurityCode::getEmail, 0, clock);
+        sut.put("code", new SecurityCode(EMAIL, "code"), TTL);
+        sut.put("code", new SecurityCode(EMAIL, "code"));
+
+        when(clock.millis()).thenReturn(TTL.toMillis());
+
+        assertEquals(0, sut.purgeExpired());
+        assertTrue(sut.hasKey("code"));
+    }
+
+    @Test
+    public void purgeExpired_someEntriesExpired_removeOnlyExpired() {
+        Clock clock = clockAt(0);
+        sut = new InMemoryStore<>(SecurityCode::getEmail, 0, clock);
+        sut.put("short", new SecurityCode(EMAIL, "short"), TTL);
+        sut.put("long", new SecurityCode("other@example.com", "long"), TTL.multipliedBy(100));
+        sut.put("forever", new SecurityCode("another@example.com", "forever"));
+
+        when(clock.millis()).thenReturn(TTL.toMillis() + 1000);
+
+        assertEquals(1, sut.purgeExpired());
+        assertEquals(2, sut.values().size());
+
+        when(clock.millis()).thenReturn(TTL.multipliedBy(100).toMillis() + 1000);
+
+        assertEquals(1, sut.purgeExpired());
+        assertEquals(1, sut.values().size());
+        assertTrue(sut.hasKey("forever"));
+    }
+
+    @Test
+    public void compute_keyAbsent_storeComputedValue() {
+        SecurityCode computed = sut.compute("code", current -> current == null ? new SecurityCode(EMAIL, "code") : null,
+                TTL);
+
+        assertEquals(computed, sut.get("code"));
+        assertEquals(Optional.of(computed), sut.findByIndex(EMAIL));
+    }
+
+    @Test
+    public void compute_nullReturned_removeEntry() {
+        sut.put("code", new SecurityCode(EMAIL, "code"));
+
+        sut.compute("code", current -> null, null);
+
+        assertFalse(sut.hasKey("code"));
+        assertFalse(sut.findByIndex(EMAIL).isPresent());
+    }
+
+    @Test
+    public void getAll_someKeysMissing_returnOnlyPresent() {
+        Map<String, SecurityCode> codes = new HashMap<>();
+        codes.put("first", new SecurityCode(EMAIL, "first"));
+        codes.put("second", new SecurityCode("other@example.com", "second"));
+        sut.putAll(codes, TTL);
+
+        assertEquals(codes, sut.getAll(Arrays.asList("first", "second", "missing")));
+    }
+
+    @Test
+    public void removeAll_keysGiven_removeValuesAndIndex() {
+        sut.put("first", new SecurityCode(EMAIL, "first"));
+        sut.put("second", new SecurityCode("other@example.com", "second"));
+
+        sut.removeAll(Arrays.asList("first", "second"));
+
+        assertTrue(sut.values().isEmpty());
+        assertFalse(sut.findByIndex(EMAIL).isPresent());
+    }
+
+    @Test
+    public void values_storeChangedAfterwards_returnedValuesUnchanged() {
+        sut.put("first", new SecurityCode(EMAIL, "first"));
+        Collection<SecurityCode> values = sut.values();
+
+        sut.put("second", new SecurityCode("other@example.com", "second"));
+        sut.remove("first");
+
+        assertEquals(Collections.singletonList("first"),
+                values.stream().map(SecurityCode::getCode).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void scan_valuesStored_passEveryValue() {
+        sut.put("first", new SecurityCode(EMAIL, "first"));
+        sut.put("second", new SecurityCode("other@example.com", "second"));
+
+        List<String> scanned = new ArrayList<>();
+        sut.scan(1, code -> scanned.add(code.getCode()));
+
+        assertEquals(2, scanned.size());
+        assertTrue(scanned.containsAll(Arrays.asList("first", "second")));
+    }
+
+    @Test
+    public void valuesAndScan_entryExpiredNotPurged_skipExpiredEntry() {
+        Clock clock = clockAt(0);
+        sut = new InMemoryStore<>(SecurityCode::getEmail, 0, clock);
+        sut.put("expiring", new SecurityCode(EMAIL, "expiring"), TTL);
+        sut.put("forever", new SecurityCode("other@example.com", "forever"));
+
+        when(clock.millis()).thenReturn(TTL.toMillis());
+
+        List<String> scanned = new ArrayList<>();
+        sut.scan(1, code -> scanned.add(code.getCode()));
+        assertEquals(Collections.singletonList("forever"), scanned);
+        assertEquals(Collections.singletonList("forever"),
+                sut.values().stream().map(SecurityCode::getCode).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void size_entriesAddedAndRemoved_countCurrentEntries() {
+        sut.put("first", new SecurityCode(EMAIL, "first"));
+        sut.put("second", new SecurityCode("other@example.com", "second"));
+        sut.put("second", new SecurityCode("other@example.com", "second"));
+        sut.remove("first");
+
+        assertEquals(1, sut.size());
+    }
+
+    @Test
+    public void getAndRemove_calledTwice_returnValueOnlyOnce() {
+        SecurityCode code = new SecurityCode(EMAIL, "code");
+        sut.put("code", code);
+
+        assertEquals(code, sut.getAndRemove("code"));
+        assertNull(sut.getAndRemove("code"));
+        assertFalse(sut.findByIndex(EMAIL).isPresent());
+    }
+
+    private static Clock clockAt(long millis) {
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(millis);
+        return clock;
+    }
+}
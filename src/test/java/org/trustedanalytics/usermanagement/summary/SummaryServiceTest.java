@@ -28,12 +28,19 @@ import org.trustedanalytics.usermanagement.users.model.User;
 import org.trustedanalytics.usermanagement.users.model.UserRole;
 import org.trustedanalytics.usermanagement.users.service.UsersService;
 
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -72,6 +79,8 @@ public class SummaryServiceTest {
 
         // when
         when(usersService.getOrgUsers(org().getGuid())).thenReturn(users);
+        when(usersService.getOrgsUsers(Collections.singletonList(org.getGuid())))
+                .thenReturn(Collections.singletonMap(org.getGuid(), users));
         when(organizationsStorage.getOrganization(org.getGuid())).thenReturn(Optional.of(org));
         when(organizationsStorage.getOrganizations()).thenReturn(Collections.singleton(org));
 
@@ -80,6 +89,28 @@ public class SummaryServiceTest {
         assertEquals(summaryService.getPlatformSummary(), summary);
     }
 
+    @Test
+    public void getPlatformSummary_manyOrgs_usersFetchedOnce() {
+        // given
+        Org first = new Org("first-org-id", "first-org-name");
+        Org second = new Org("second-org-id", "second-org-name");
+        Collection<User> users = users();
+        Map<String, Collection<User>> orgsUsers = new HashMap<>();
+        orgsUsers.put(first.getGuid(), users);
+        orgsUsers.put(second.getGuid(), users);
+
+        // when
+        when(organizationsStorage.getOrganizations()).thenReturn(Arrays.asList(first, second));
+        when(usersService.getOrgsUsers(Arrays.asList(first.getGuid(), second.getGuid()))).thenReturn(orgsUsers);
+        PlatformSummary summary = summaryService.getPlatformSummary();
+
+        // then
+        assertEquals(2, summary.getOrganizations().size());
+        summary.getOrganizations().forEach(org -> assertEquals(users, org.getUsers()));
+        verify(usersService, times(1)).getOrgsUsers(any());
+        verify(usersService, never()).getOrgUsers(any());
+    }
+
     private Org org() {
         return new Org("sample-org-id", "sample-org-name");
     }
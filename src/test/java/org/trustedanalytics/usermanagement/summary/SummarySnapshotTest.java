@@ -0,0 +1,181 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.summary;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.trustedanalytics.usermanagement.orgs.model.Org;
+import org.trustedanalytics.usermanagement.orgs.service.OrganizationsStorage;
+import org.trustedanalytics.usermanagement.summary.model.OrganizationSummary;
+import org.trustedanalytics.usermanagement.summary.model.PlatformSummary;
+import org.trustedanalytics.usermanagement.summary.service.SummarySnapshot;
+import org.trustedanalytics.usermanagement.users.model.User;
+import org.trustedanalytics.usermanagement.users.model.UserRole;
+import org.trustedanalytics.usermanagement.users.service.UserChangedEvent;
+import org.trustedanalytics.usermanagement.users.service.UsersService;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class SummarySnapshotTest {
+
+    @Mock
+    private UsersService privilegedUsersService;
+
+    @Mock
+    private OrganizationsStorage organizationsStorage;
+
+    private final Org org = new Org("org-id", "org-name");
+    private final User user = new User("user-id", "user", UserRole.USER);
+    private final User admin = new User("admin-id", "admin", UserRole.ADMIN);
+
+    private SummarySnapshot sut;
+
+    @Before
+    public void setUp() {
+        Collection<User> users = Arrays.asList(user, admin);
+        when(organizationsStorage.getOrganizations()).thenReturn(Collections.singletonList(org));
+        when(privilegedUsersService.getOrgsUsers(any()))
+                .thenReturn(Collections.singletonMap(org.getGuid(), users));
+        sut = new SummarySnapshot(60000, privilegedUsersService, organizationsStorage);
+    }
+
+    @Test
+    public void getPlatformSummary_readTwice_usersFetchedOnce() {
+        SummarySnapshot.Versioned<PlatformSummary> first = sut.getPlatformSummary();
+        SummarySnapshot.Versioned<PlatformSummary> second = sut.getPlatformSummary();
+
+        assertEquals(first.getEtag(), second.getEtag());
+        assertEquals(Arrays.asList(admin, user), first.getValue().getOrganizations().iterator().next().getUsers());
+        verify(privilegedUsersService, times(1)).getOrgsUsers(any());
+    }
+
+    @Test
+    public void onApplicationEvent_roleChanged_summaryPatched() {
+        String etag = sut.getPlatformSummary().getEtag();
+
+        sut.onApplicationEvent(UserChangedEvent.roleChanged(this, user.getGuid(), UserRole.ADMIN));
+
+        SummarySnapshot.Versioned<PlatformSummary> patched = sut.getPlatformSummary();
+        assertNotEquals(etag, patched.getEtag());
+        assertEquals(Arrays.asList(admin, new User(user.getGuid(), user.getUsername(), UserRole.ADMIN)),
+                patched.getValue().getOrganizations().iterator().next().getUsers());
+        verify(privilegedUsersService, times(1)).getOrgsUsers(any());
+    }
+
+    @Test
+    public void onApplicationEvent_userDeleted_userRemoved() {
+        sut.getPlatformSummary();
+
+        sut.onApplicationEvent(UserChangedEvent.deleted(this, user.getGuid()));
+
+        OrganizationSummary summary = sut.getOrganizationSummary(org.getGuid()).get().getValue();
+        assertEquals(Collections.singletonList(admin), summary.getUsers());
+        verify(privilegedUsersService, times(1)).getOrgsUsers(any());
+    }
+
+    @Test
+    public void onApplicationEvent_unknownUserGotRole_rebuiltOnNextRead() {
+        sut.getPlatformSummary();
+
+        sut.onApplicationEvent(UserChangedEvent.roleChanged(this, "new-user-id", UserRole.USER));
+        sut.getPlatformSummary();
+
+        verify(privilegedUsersService, times(2)).getOrgsUsers(any());
+    }
+
+    @Test
+    public void onApplicationEvent_userCreated_rebuiltOnNextRead() {
+        sut.getPlatformSummary();
+
+        sut.onApplicationEvent(UserChangedEvent.created(this, "new-user-id"));
+        sut.getPlatformSummary();
+
+        verify(privilegedUsersService, times(2)).getOrgsUsers(any());
+    }
+
+    @Test
+    public void onApplicationEvent_membershipChanged_rebuiltOnNextRead() {
+        sut.getPlatformSummary();
+
+        sut.onApplicationEvent(UserChangedEvent.membershipChanged(this, UserRole.USER));
+        sut.getPlatformSummary();
+
+        verify(privilegedUsersService, times(2)).getOrgsUsers(any());
+    }
+
+    @Test
+    public void onApplicationEvent_publishedDuringRefresh_notBlockedAndLoadedSummaryDiscarded() {
+        Collection<User> users = Arrays.asList(user, admin);
+        CountDownLatch published = new CountDownLatch(1);
+        when(privilegedUsersService.getOrgsUsers(any())).thenAnswer(invocation -> {
+            new Thread(() -> {
+                sut.onApplicationEvent(UserChangedEvent.created(this, "new-user-id"));
+                published.countDown();
+            }).start();
+            assertTrue(published.await(5, TimeUnit.SECONDS));
+            return Collections.singletonMap(org.getGuid(), users);
+        }).thenReturn(Collections.singletonMap(org.getGuid(), users));
+
+        sut.getPlatformSummary();
+        sut.getPlatformSummary();
+        sut.getPlatformSummary();
+
+        verify(privilegedUsersService, times(2)).getOrgsUsers(any());
+    }
+
+    @Test
+    public void etag_usersInDifferentOrder_equalEtag() {
+        OrganizationSummary first = new OrganizationSummary();
+        first.setGuid(org.getGuid());
+        first.setName(org.getName());
+        first.setUsers(Arrays.asList(user, admin));
+        OrganizationSummary second = new OrganizationSummary();
+        second.setGuid(org.getGuid());
+        second.setName(org.getName());
+        second.setUsers(Arrays.asList(admin, user));
+
+        assertEquals(SummarySnapshot.etag(first), SummarySnapshot.etag(second));
+    }
+
+    @Test
+    public void etag_equalContent_equalEtag() {
+        PlatformSummary summary = sut.getPlatformSummary().getValue();
+        OrganizationSummary copy = new OrganizationSummary();
+        copy.setGuid(org.getGuid());
+        copy.setName(org.getName());
+        copy.setUsers(Arrays.asList(new User("user-id", "user", UserRole.USER), admin));
+
+        assertEquals(SummarySnapshot.etag(summary),
+                SummarySnapshot.etag(new PlatformSummary(Collections.singletonList(copy))));
+        assertTrue(SummarySnapshot.etag(copy).startsWith("\""));
+    }
+}
@@ -23,7 +23,12 @@ import org.mockito.runners.MockitoJUnitRunner;
 import org.trustedanalytics.usermanagement.invitations.WrongEmailAddressException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
 
 @RunWith(MockitoJUnitRunner.class)
 
@@ -34,6 +39,8 @@ public class EmailValidatorTest {
     private static final String VALID_EMAIL_PLUS = "foo+fop2@examplee.com";
     private static final String VALID_EMAIL_BLOCKED_DOMAIN = "foo@example.com";
     private static final String INVALID_EMAIL = ".foo@bar@.";
+    private static final String VALID_EMAIL_BLOCKED_SUBDOMAIN = "foo@mail.example.com";
+    private static final String VALID_EMAIL_SIMILAR_DOMAIN = "foo@myexample.com";
     private BlacklistEmailValidator emailValidator;
 
     private List<String> forbiddenDomains = new ArrayList<>();
@@ -69,4 +76,42 @@ public class EmailValidatorTest {
     public void validateEmailAddress_invalidEmail_exceptionThrown(){
         emailValidator.validate(INVALID_EMAIL);
     }
-}
\ No newline at end of file
+
+    @Test(expected = WrongEmailAddressException.class)
+    public void validateEmailAddress_blockedSubdomain_exceptionThrown(){
+        emailValidator.validate(VALID_EMAIL_BLOCKED_SUBDOMAIN);
+    }
+
+    @Test
+    public void validateEmailAddress_domainEndingWithBlockedName_accepted(){
+        emailValidator.validate(VALID_EMAIL_SIMILAR_DOMAIN);
+    }
+
+    @Test(expected = WrongEmailAddressException.class)
+    public void validateEmailAddress_blockedDomainWithWhitespaceInConfig_exceptionThrown(){
+        new BlacklistEmailValidator(Arrays.asList("foo.com", " Example.com")).validate(VALID_EMAIL_BLOCKED_DOMAIN);
+    }
+
+    @Test
+    public void findViolation_validAndInvalidEmails_reasonReturned(){
+        assertEquals(Optional.empty(), emailValidator.findViolation(VALID_EMAIL_GOOD_DOMAIN));
+        assertEquals(Optional.of("That domain is blocked"), emailValidator.findViolation(VALID_EMAIL_BLOCKED_DOMAIN));
+        assertEquals(Optional.of("That email address is not valid"), emailValidator.findViolation(INVALID_EMAIL));
+    }
+
+    @Test(expected = WrongEmailAddressException.class)
+    public void validateEmailAddress_upperCaseBlockedDomainUnderTurkishLocale_exceptionThrown(){
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            new BlacklistEmailValidator(Arrays.asList("MAIL.IO")).validate("foo@mail.io");
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void normalize_upperCaseAndWhitespace_canonicalForm(){
+        assertEquals(VALID_EMAIL_GOOD_DOMAIN, emailValidator.normalize(" " + INVALID_EMAIL_CAPITAL_LETTERS + "\t"));
+    }
+}
@@ -0,0 +1,95 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users;
+
+import org.cloudfoundry.identity.uaa.rest.SearchResults;
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestOperations;
+import org.trustedanalytics.usermanagement.users.model.UsersQuery;
+import org.trustedanalytics.usermanagement.users.rest.UaaScimClient;
+
+import java.net.URI;
+import java.util.Collections;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UaaScimClientTest {
+
+    @Mock
+    private RestOperations restTemplate;
+
+    private UaaScimClient sut;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        SearchResults<ScimUser> results = mock(SearchResults.class);
+        when(results.getResources()).thenReturn(Collections.emptyList());
+        when(restTemplate.exchange(any(URI.class), eq(HttpMethod.GET), any(HttpEntity.class),
+                any(ParameterizedTypeReference.class)))
+                .thenReturn(new ResponseEntity<>(results, HttpStatus.OK));
+        sut = new UaaScimClient("http://uaa.example.com", restTemplate);
+    }
+
+    @Test
+    public void findUserNames_plusAddressedEmail_plusEncodedInFilter() {
+        sut.findUserNames(Collections.singletonList("foo+bar@example.com"));
+
+        String query = requestedUri().getRawQuery();
+        assertTrue(query, query.contains("foo%2Bbar%40example.com"));
+        assertFalse(query, query.contains("foo+bar"));
+    }
+
+    @Test
+    public void findUserByName_plusAddressedEmail_plusEncodedInFilter() {
+        sut.findUserByName("foo+bar@example.com");
+
+        assertTrue(requestedUri().getRawQuery().contains("foo%2Bbar%40example.com"));
+    }
+
+    @Test
+    public void getUsers_filterWithPlus_plusEncodedInFilter() {
+        sut.getUsers(new UsersQuery(1, 10, "userName eq \"foo+bar@example.com\"", null, false));
+
+        assertTrue(requestedUri().getRawQuery().contains("foo%2Bbar%40example.com"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private URI requestedUri() {
+        ArgumentCaptor<URI> uri = ArgumentCaptor.forClass(URI.class);
+        verify(restTemplate).exchange(uri.capture(), eq(HttpMethod.GET), any(HttpEntity.class),
+                any(ParameterizedTypeReference.class));
+        return uri.getValue();
+    }
+}
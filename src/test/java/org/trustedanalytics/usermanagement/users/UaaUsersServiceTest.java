@@ -15,17 +15,17 @@
  */
 package org.trustedanalytics.usermanagement.users;
 
-import org.cloudfoundry.identity.uaa.rest.SearchResults;
 import org.cloudfoundry.identity.uaa.scim.ScimGroup;
 import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
 import org.cloudfoundry.identity.uaa.scim.ScimUser;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
 import org.trustedanalytics.uaa.UaaOperations;
-import org.trustedanalytics.uaa.UserIdNamePair;
 import org.trustedanalytics.usermanagement.common.EntityNotFoundException;
 import org.trustedanalytics.usermanagement.invitations.UserExistsException;
 import org.trustedanalytics.usermanagement.invitations.service.AccessInvitationsService;
@@ -34,15 +34,22 @@ import org.trustedanalytics.usermanagement.orgs.model.Org;
 import org.trustedanalytics.usermanagement.users.model.User;
 import org.trustedanalytics.usermanagement.users.model.UserRequest;
 import org.trustedanalytics.usermanagement.users.model.UserRole;
+import org.trustedanalytics.usermanagement.users.model.UsersPage;
+import org.trustedanalytics.usermanagement.users.model.UsersQuery;
 import org.trustedanalytics.usermanagement.users.rest.AuthGatewayOperations;
+import org.trustedanalytics.usermanagement.users.service.AdminGroupIndex;
 import org.trustedanalytics.usermanagement.users.service.UaaUsersService;
+import org.trustedanalytics.usermanagement.users.service.UserChangedEvent;
+import org.trustedanalytics.usermanagement.users.service.UserDirectory;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -51,6 +58,7 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -78,7 +86,7 @@ public class UaaUsersServiceTest {
     private AccessInvitationsService accessInvitationsService;
 
     @Mock
-    private SearchResults<ScimUser> scimUserSearchResults;
+    private UserDirectory userDirectory;
 
     @Mock
     private AuthGatewayOperations authGatewayOperations;
@@ -103,10 +111,14 @@ public class UaaUsersServiceTest {
         testUsersFromUaa = Arrays.asList(testUserFromUaa);
         existingOrganization = new Org("defaultorg", "the-only-org");
 
-        when(uaaOperations.getUsers()).thenReturn(scimUserSearchResults);
-        when(scimUserSearchResults.getResources()).thenReturn(testUsersFromUaa);
+        when(userDirectory.getUsers()).thenReturn(testUsersFromUaa);
+        when(userDirectory.getUser(any())).thenReturn(Optional.empty());
+        when(userDirectory.getUser(userId)).thenReturn(Optional.of(testUserFromUaa));
+        when(userDirectory.getUserByName(any())).thenReturn(Optional.empty());
+        when(uaaOperations.getGroup("tap.admin")).thenReturn(Optional.of(adminGroup));
 
-        sut = new UaaUsersService(uaaOperations, invitationService, accessInvitationsService, authGatewayOperations);
+        sut = new UaaUsersService(uaaOperations, userDirectory, new AdminGroupIndex(uaaOperations, Duration.ZERO),
+                invitationService, accessInvitationsService, authGatewayOperations);
     }
 
     @Test
@@ -115,11 +127,41 @@ public class UaaUsersServiceTest {
         assertTrue(result.containsAll(testUsers));
     }
 
+    @Test
+    public void getOrgUsers_userInAdminGroup_adminRole() {
+        adminGroup.setMembers(Arrays.asList(new ScimGroupMember(testUser.getGuid())));
+
+        Collection<User> result = sut.getOrgUsers(existingOrganization.getGuid());
+
+        assertEquals(UserRole.ADMIN, result.iterator().next().getRole());
+    }
+
+    @Test
+    public void getOrgsUsers_manyOrgs_usersListedOnce() {
+        Map<String, Collection<User>> result = sut.getOrgsUsers(Arrays.asList("org-1", "org-2"));
+
+        assertEquals(2, result.size());
+        assertTrue(result.get("org-1").containsAll(testUsers));
+        assertTrue(result.get("org-2").containsAll(testUsers));
+        verify(userDirectory, times(1)).getUsers();
+    }
+
+    @Test
+    public void getOrgUsers_query_returnPageFromDirectory() {
+        UsersQuery query = new UsersQuery(1, 10, null, null, false);
+        when(userDirectory.getUsers(query)).thenReturn(new UsersPage<>(testUsersFromUaa, 1, 25));
+
+        UsersPage<User> result = sut.getOrgUsers(existingOrganization.getGuid(), query);
+
+        assertEquals(testUsers, result.getResources());
+        assertEquals(25, result.getTotalResults());
+        verify(userDirectory, never()).getUsers();
+    }
+
     @Test
     public void addOrgUser_userDoesntExist_inviteUser_doNotCreateAccount_returnEmptyOptional() {
         String userToAdd = "testuser";
         String currentUser = "admin_test";
-        when(uaaOperations.findUserIdByName(userToAdd)).thenReturn(Optional.empty());
         when(accessInvitationsService.createOrUpdateInvitation(eq(userToAdd),
                 any())).thenReturn(AccessInvitationsService.CreateOrUpdateState.CREATED);
 
@@ -131,10 +173,22 @@ public class UaaUsersServiceTest {
         verify(authGatewayOperations, never()).createUser(any(), any());
     }
 
+    @Test
+    public void addOrgUser_userDoesntExist_publishMembershipChangedEvent() {
+        ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+        sut.setApplicationEventPublisher(eventPublisher);
+        ArgumentCaptor<UserChangedEvent> event = ArgumentCaptor.forClass(UserChangedEvent.class);
+
+        sut.addOrgUser(new UserRequest("testuser"), orgId, "admin_test");
+
+        verify(eventPublisher).publishEvent(event.capture());
+        assertEquals(UserChangedEvent.Type.MEMBERSHIP_CHANGED, event.getValue().getType());
+        assertEquals(UserRole.USER, event.getValue().getRole());
+    }
+
     @Test(expected = UserExistsException.class)
     public void addOrgUser_userExists_doNotInviteUser_throwUserExistsException() {
-        UserIdNamePair idNamePair = UserIdNamePair.of(testUser.getGuid(), testUser.getUsername());
-        when(uaaOperations.findUserIdByName(testUser.getUsername())).thenReturn(Optional.ofNullable(idNamePair));
+        when(userDirectory.getUserByName(testUser.getUsername())).thenReturn(Optional.of(testUserFromUaa));
 
         sut.addOrgUser(new UserRequest(testUser.getUsername(), UserRole.USER), orgId, "admin_test");
 
@@ -147,6 +201,17 @@ public class UaaUsersServiceTest {
 
         verify(authGatewayOperations, times(1)).deleteUser(orgId, testUser.getGuid());
         verify(uaaOperations).deleteUser(testUser.getGuid());
+        verify(userDirectory).invalidate(testUser.getGuid());
+    }
+
+    @Test
+    public void deleteUserFromOrg_userExists_publishUserChangedEvent() {
+        ApplicationEventPublisher eventPublisher = mock(ApplicationEventPublisher.class);
+        sut.setApplicationEventPublisher(eventPublisher);
+
+        sut.deleteUserFromOrg(testUser.getGuid(), orgId);
+
+        verify(eventPublisher).publishEvent(any(UserChangedEvent.class));
     }
 
     @Test
@@ -201,8 +266,6 @@ public class UaaUsersServiceTest {
 
     @Test
     public void updateOrgUserRole_userRole_userNotPresentInAdminGroup_doNothing() {
-        when(uaaOperations.getUsers()).thenReturn(scimUserSearchResults);
-        when(scimUserSearchResults.getResources()).thenReturn(testUsersFromUaa);
         when(uaaOperations.getGroup("tap.admin")).thenReturn(Optional.of(adminGroup));
         adminGroup.setMembers(new ArrayList<>());
 
@@ -20,6 +20,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.provider.OAuth2Authentication;
@@ -28,14 +29,22 @@ import org.trustedanalytics.usermanagement.orgs.model.Org;
 import org.trustedanalytics.usermanagement.orgs.service.OrganizationsStorage;
 import org.trustedanalytics.usermanagement.security.AccessTokenDetails;
 import org.trustedanalytics.usermanagement.security.service.UserDetailsFinder;
+import org.trustedanalytics.usermanagement.users.model.User;
 import org.trustedanalytics.usermanagement.users.model.UserRequest;
 import org.trustedanalytics.usermanagement.users.model.UserRole;
 import org.trustedanalytics.usermanagement.users.model.UserRolesRequest;
+import org.trustedanalytics.usermanagement.users.model.UsersPage;
+import org.trustedanalytics.usermanagement.users.model.UsersQuery;
 import org.trustedanalytics.usermanagement.users.rest.UsersController;
 import org.trustedanalytics.usermanagement.users.service.UsersService;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -82,7 +91,7 @@ public class UsersControllerTest {
         when(detailsFinder.findUserRole(auth)).thenReturn(UserRole.ADMIN);
         when(organizationsStorage.getOrganization(orgId)).thenReturn(Optional.<Org>empty());
 
-        sut.getOrgUsers(orgId, auth);
+        sut.getOrgUsers(orgId, null, null, null, null, "ascending", auth);
     }
 
     @Test
@@ -91,7 +100,7 @@ public class UsersControllerTest {
         when(detailsFinder.findUserRole(auth)).thenReturn(UserRole.USER);
         when(organizationsStorage.getOrganization(orgId)).thenReturn(Optional.of(new Org(orgId, orgName)));
 
-        sut.getOrgUsers(orgId, auth);
+        sut.getOrgUsers(orgId, null, null, null, null, "ascending", auth);
 
         verify(detailsFinder).findUserRole(auth);
         verify(usersService, times(1)).getOrgUsers(orgId);
@@ -104,13 +113,30 @@ public class UsersControllerTest {
         when(detailsFinder.findUserRole(auth)).thenReturn(UserRole.ADMIN);
         when(organizationsStorage.getOrganization(orgId)).thenReturn(Optional.of(new Org(orgId, orgName)));
 
-        sut.getOrgUsers(orgId, auth);
+        sut.getOrgUsers(orgId, null, null, null, null, "ascending", auth);
 
         verify(detailsFinder).findUserRole(auth);
         verify(usersService, times(0)).getOrgUsers(orgId);
         verify(privilegedUsersService, times(1)).getOrgUsers(orgId);
     }
 
+    @Test
+    public void getOrgUsers_pagingRequested_returnPageWithTotalCount() {
+        OAuth2Authentication auth = new OAuth2Authentication(null, userAuthentication);
+        when(detailsFinder.findUserRole(auth)).thenReturn(UserRole.ADMIN);
+        when(organizationsStorage.getOrganization(orgId)).thenReturn(Optional.of(new Org(orgId, orgName)));
+        UsersQuery query = new UsersQuery(11, 10, "userName co \"john\"", "userName", true);
+        List<User> users = Collections.singletonList(new User("id", "john", UserRole.USER));
+        when(privilegedUsersService.getOrgUsers(orgId, query)).thenReturn(new UsersPage<>(users, 11, 42));
+
+        ResponseEntity<Collection<User>> response =
+                sut.getOrgUsers(orgId, 11, 10, "userName co \"john\"", "userName", "descending", auth);
+
+        assertEquals(users, response.getBody());
+        assertEquals("42", response.getHeaders().getFirst(UsersController.TOTAL_COUNT_HEADER));
+        verify(privilegedUsersService, never()).getOrgUsers(orgId);
+    }
+
     @Test(expected = EntityNotFoundException.class)
     public void createOrgUser_orgDoesNotExist_throwEntityNotFound() {
         OAuth2Authentication auth = new OAuth2Authentication(null, userAuthentication);
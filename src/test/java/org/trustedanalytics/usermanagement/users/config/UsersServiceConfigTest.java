@@ -0,0 +1,118 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users.config;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.web.client.RestOperations;
+import org.springframework.web.client.RestTemplate;
+import org.trustedanalytics.auth.AuthTokenRetriever;
+import org.trustedanalytics.usermanagement.invitations.service.AccessInvitationsService;
+import org.trustedanalytics.usermanagement.invitations.service.InvitationsService;
+import org.trustedanalytics.usermanagement.metrics.DependencyMetrics;
+import org.trustedanalytics.usermanagement.users.rest.AuthGatewayOperations;
+import org.trustedanalytics.usermanagement.users.rest.UaaScimOperations;
+import org.trustedanalytics.usermanagement.users.service.UsersService;
+
+import static org.junit.Assert.assertNotNull;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Starts the cloud users context with its external dependencies mocked, so that beans which can no longer
+ * be wired (e.g. after a bean started returning an instrumented proxy) fail the build.
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration(classes = {UsersServiceConfig.class, UsersServiceConfigTest.Dependencies.class})
+@TestPropertySource(properties = {"oauth.uaa=http://uaa.example.com", "oauth.resource=http://api.example.com"})
+@ActiveProfiles("cloud")
+public class UsersServiceConfigTest {
+
+    @Autowired
+    private UsersService usersService;
+
+    @Autowired
+    private UsersService privilegedUsersService;
+
+    @Autowired
+    private UaaScimOperations uaaPrivilegedScimClient;
+
+    @Test
+    public void context_cloudProfile_usersServicesWired() {
+        assertNotNull(usersService);
+        assertNotNull(privilegedUsersService);
+        assertNotNull(uaaPrivilegedScimClient);
+    }
+
+    @Configuration
+    public static class Dependencies {
+
+        @Bean
+        public static PropertySourcesPlaceholderConfigurer propertySourcesPlaceholderConfigurer() {
+            return new PropertySourcesPlaceholderConfigurer();
+        }
+
+        @Bean
+        public DependencyMetrics dependencyMetrics() {
+            return new DependencyMetrics("users_service_config_test");
+        }
+
+        @Bean
+        public AuthTokenRetriever authTokenRetriever() {
+            return mock(AuthTokenRetriever.class);
+        }
+
+        @Bean
+        public OAuth2ProtectedResourceDetails clientCredentials() {
+            return mock(OAuth2ProtectedResourceDetails.class);
+        }
+
+        @Bean
+        public RestOperations clientRestTemplate() {
+            return mock(RestOperations.class);
+        }
+
+        @Bean
+        public RestTemplate userRestTemplate() {
+            return mock(RestTemplate.class);
+        }
+
+        @Bean
+        public InvitationsService invitationsService() {
+            return mock(InvitationsService.class);
+        }
+
+        @Bean
+        public AccessInvitationsService accessInvitationsService() {
+            return mock(AccessInvitationsService.class);
+        }
+
+        @Bean
+        public AuthGatewayOperations authGatewayOperations() {
+            return mock(AuthGatewayOperations.class);
+        }
+    }
+}
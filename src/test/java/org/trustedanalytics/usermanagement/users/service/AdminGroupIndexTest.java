@@ -0,0 +1,121 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users.service;
+
+import org.cloudfoundry.identity.uaa.scim.ScimGroup;
+import org.cloudfoundry.identity.uaa.scim.ScimGroupMember;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.trustedanalytics.uaa.UaaOperations;
+import org.trustedanalytics.usermanagement.common.EntityNotFoundException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AdminGroupIndexTest {
+
+    @Mock
+    private UaaOperations uaaOperations;
+
+    @Mock
+    private Clock clock;
+
+    private AdminGroupIndex sut;
+
+    @Before
+    public void setUp() {
+        ScimGroup adminGroup = new ScimGroup("group-id", "tap.admin", "zone");
+        adminGroup.setMembers(Collections.singletonList(new ScimGroupMember("admin-id")));
+        when(uaaOperations.getGroup("tap.admin")).thenReturn(Optional.of(adminGroup));
+        when(clock.millis()).thenReturn(0L);
+        sut = new AdminGroupIndex(uaaOperations, Duration.ofSeconds(60), clock);
+    }
+
+    @Test
+    public void snapshot_withinTtl_groupFetchedOnce() {
+        assertTrue(sut.snapshot().isMember("admin-id"));
+        when(clock.millis()).thenReturn(59_999L);
+        assertFalse(sut.snapshot().isMember("user-id"));
+
+        verify(uaaOperations, times(1)).getGroup("tap.admin");
+    }
+
+    @Test
+    public void snapshot_ttlElapsed_groupFetchedAgain() {
+        sut.snapshot();
+        when(clock.millis()).thenReturn(60_000L);
+        sut.snapshot();
+
+        verify(uaaOperations, times(2)).getGroup("tap.admin");
+    }
+
+    @Test
+    public void addMember_groupChangedSinceSnapshot_latestGroupUpdated() {
+        sut.snapshot();
+        ScimGroup latest = new ScimGroup("group-id", "tap.admin", "zone");
+        latest.setMembers(Collections.singletonList(new ScimGroupMember("other-admin-id")));
+        when(uaaOperations.getGroup("tap.admin")).thenReturn(Optional.of(latest));
+
+        sut.addMember("user-id");
+
+        verify(uaaOperations).addUserToGroup(latest, "user-id");
+        assertTrue(sut.snapshot().isMember("user-id"));
+        assertTrue(sut.snapshot().isMember("other-admin-id"));
+        verify(uaaOperations, times(2)).getGroup("tap.admin");
+    }
+
+    @Test
+    public void removeMember_memberOfCachedGroup_removedFromLatestGroup() {
+        sut.snapshot();
+
+        sut.removeMember("admin-id");
+
+        verify(uaaOperations).removeUserFromGroup(any(ScimGroup.class), eq("admin-id"));
+        assertFalse(sut.snapshot().isMember("admin-id"));
+        verify(uaaOperations, times(2)).getGroup("tap.admin");
+    }
+
+    @Test
+    public void snapshot_zeroTtl_groupFetchedEveryTime() {
+        sut = new AdminGroupIndex(uaaOperations, Duration.ZERO, clock);
+
+        sut.snapshot();
+        sut.snapshot();
+
+        verify(uaaOperations, times(2)).getGroup("tap.admin");
+    }
+
+    @Test(expected = EntityNotFoundException.class)
+    public void snapshot_groupDoesNotExist_throwEntityNotFound() {
+        when(uaaOperations.getGroup("tap.admin")).thenReturn(Optional.empty());
+
+        sut.snapshot();
+    }
+}
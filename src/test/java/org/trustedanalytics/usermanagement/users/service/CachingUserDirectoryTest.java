@@ -0,0 +1,122 @@
+/**
+ *  Copyright (c) 2016 Intel Corporation 
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *       http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package org.trustedanalytics.usermanagement.users.service;
+
+import org.cloudfoundry.identity.uaa.scim.ScimUser;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingUserDirectoryTest {
+
+    @Mock
+    private UserDirectory delegate;
+
+    @Mock
+    private Clock clock;
+
+    private ScimUser alice;
+    private ScimUser bob;
+
+    private CachingUserDirectory sut;
+
+    @Before
+    public void setUp() {
+        alice = new ScimUser("alice-id", "alice", "", "");
+        bob = new ScimUser("bob-id", "bob", "", "");
+        when(clock.millis()).thenReturn(0L);
+        when(delegate.getUsers()).thenReturn(Arrays.asList(alice, bob));
+        when(delegate.getUser(any())).thenReturn(Optional.empty());
+        when(delegate.getUserByName(any())).thenReturn(Optional.empty());
+        sut = new CachingUserDirectory(delegate, Duration.ofSeconds(60), clock);
+    }
+
+    @Test
+    public void getUser_cachedUser_noTargetedLookup() {
+        assertEquals(Optional.of(alice), sut.getUser("alice-id"));
+        assertEquals(Optional.of(bob), sut.getUserByName("bob"));
+
+        verify(delegate, times(1)).getUsers();
+        verify(delegate, never()).getUser("alice-id");
+        verify(delegate, never()).getUserByName("bob");
+    }
+
+    @Test
+    public void getUser_userCreatedAfterLoad_lookedUpAndCached() {
+        ScimUser carol = new ScimUser("carol-id", "carol", "", "");
+        when(delegate.getUser("carol-id")).thenReturn(Optional.of(carol));
+
+        assertEquals(Optional.of(carol), sut.getUser("carol-id"));
+        assertEquals(Optional.of(carol), sut.getUserByName("carol"));
+
+        verify(delegate, times(1)).getUser("carol-id");
+        verify(delegate, never()).getUserByName("carol");
+    }
+
+    @Test
+    public void getUsers_refreshIntervalElapsed_reloaded() {
+        sut.getUsers();
+        when(clock.millis()).thenReturn(59_999L);
+        sut.getUsers();
+        verify(delegate, times(1)).getUsers();
+
+        when(clock.millis()).thenReturn(60_000L);
+        sut.getUsers();
+        verify(delegate, times(2)).getUsers();
+    }
+
+    @Test
+    public void invalidate_userDeleted_removedFromCache() {
+        sut.getUsers();
+        when(delegate.getUser("alice-id")).thenReturn(Optional.empty());
+
+        sut.invalidate("alice-id");
+
+        assertEquals(Collections.singletonList(bob), Arrays.asList(sut.getUsers().toArray()));
+        assertFalse(sut.getUserByName("alice").isPresent());
+    }
+
+    @Test
+    public void invalidate_userChanged_replacedInCache() {
+        sut.getUsers();
+        ScimUser renamed = new ScimUser("alice-id", "alice2", "", "");
+        when(delegate.getUser("alice-id")).thenReturn(Optional.of(renamed));
+
+        sut.invalidate("alice-id");
+
+        assertEquals(Optional.of(renamed), sut.getUser("alice-id"));
+        assertTrue(sut.getUserByName("alice2").isPresent());
+        assertFalse(sut.getUserByName("alice").isPresent());
+    }
+}